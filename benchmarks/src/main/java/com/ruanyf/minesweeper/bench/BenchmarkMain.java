@@ -0,0 +1,31 @@
+package com.ruanyf.minesweeper.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 运行所有 (或匹配指定正则的) 基准, 并附带 GC 分析器报告内存分配率
+ *
+ * @author Yaofeng Ruan
+ */
+public class BenchmarkMain {
+
+	/**
+	 * @param args
+	 *            [基准名称正则] [结果文件 (JSON)]
+	 */
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(args.length > 0 ? args[0] : "com\\.ruanyf\\.minesweeper\\.bench\\..*")
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result(args.length > 1 ? args[1] : "jmh-result.json")
+				.build();
+		new Runner(options).run();
+	}
+
+}
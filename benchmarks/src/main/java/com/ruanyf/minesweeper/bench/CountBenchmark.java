@@ -0,0 +1,77 @@
+package com.ruanyf.minesweeper.bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ruanyf.minesweeper.Core;
+
+/**
+ * Core.countMinesAround / Core.countFlagsAround 基准 (随机抽取的固定格子, 约一半的地雷已标记)
+ *
+ * @author Yaofeng Ruan
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CountBenchmark {
+
+	private static final int CELLS = 4096;
+
+	private final Core core = new Core();
+	private final int[] rows = new int[CELLS];
+	private final int[] cols = new int[CELLS];
+
+	@Setup
+	public void setup() {
+		core.init(1000, 1000, 200000, Seeds.BOARD);
+
+		SplittableRandom random = new SplittableRandom(Seeds.CELLS);
+		for (int row = 0; row < core.getRowSize(); row++) {
+			for (int col = 0; col < core.getColSize(); col++) {
+				if (core.isMine(row, col) && random.nextBoolean()) {
+					core.flag(row, col);
+				}
+			}
+		}
+		for (int i = 0; i < CELLS; i++) {
+			rows[i] = random.nextInt(core.getRowSize());
+			cols[i] = random.nextInt(core.getColSize());
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CELLS)
+	public int countMinesAround() {
+		int sum = 0;
+		for (int i = 0; i < CELLS; i++) {
+			sum += core.countMinesAround(rows[i], cols[i]);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CELLS)
+	public int countFlagsAround() {
+		int sum = 0;
+		for (int i = 0; i < CELLS; i++) {
+			sum += core.countFlagsAround(rows[i], cols[i]);
+		}
+		return sum;
+	}
+
+}
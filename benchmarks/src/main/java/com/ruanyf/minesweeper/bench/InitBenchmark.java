@@ -0,0 +1,61 @@
+package com.ruanyf.minesweeper.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ruanyf.minesweeper.Core;
+
+/**
+ * Core.init 基准 (预置难度与大尺寸自定义棋盘)
+ *
+ * @author Yaofeng Ruan
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InitBenchmark {
+
+	// 行数x列数x雷数
+	@Param({ "9x9x10", "16x16x40", "16x30x99", "1000x1000x150000", "4000x4000x2400000" })
+	public String size;
+
+	private final Core core = new Core();
+	private int rowSize, colSize, mineSize;
+
+	@Setup
+	public void setup() {
+		String[] parts = size.split("x");
+		rowSize = Integer.parseInt(parts[0]);
+		colSize = Integer.parseInt(parts[1]);
+		mineSize = Integer.parseInt(parts[2]);
+	}
+
+	@Benchmark
+	public Core init() {
+		core.init(rowSize, colSize, mineSize, Seeds.BOARD);
+		return core;
+	}
+
+	@Benchmark
+	public Core initSerial() {
+		core.parallelThreshold = Integer.MAX_VALUE;
+		core.init(rowSize, colSize, mineSize, Seeds.BOARD);
+		core.parallelThreshold = Core.PARALLEL_THRESHOLD;
+		return core;
+	}
+
+}
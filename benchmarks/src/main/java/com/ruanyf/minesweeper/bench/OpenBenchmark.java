@@ -0,0 +1,72 @@
+package com.ruanyf.minesweeper.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ruanyf.minesweeper.Core;
+
+/**
+ * Core.open 基准 (每次调用前重新生成同一棋盘, 生成耗时不计入)
+ * <ul>
+ * <li>zero: 低密度大棋盘, 一次点击翻开大片空白区域</li>
+ * <li>number: 高密度棋盘, 翻开的区域以数字格为主</li>
+ * </ul>
+ *
+ * @author Yaofeng Ruan
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 50)
+@Fork(1)
+public class OpenBenchmark {
+
+	@Param({ "zero", "number" })
+	public String board;
+
+	private final Core core = new Core();
+	private int rowSize, colSize, mineSize;
+	private int startRow, startCol;
+
+	@Setup(Level.Trial)
+	public void setupTrial() {
+		if ("zero".equals(board)) {
+			rowSize = 2000;
+			colSize = 2000;
+			mineSize = 20000;
+		} else {
+			rowSize = 1000;
+			colSize = 1000;
+			mineSize = 180000;
+		}
+		core.init(rowSize, colSize, mineSize, Seeds.BOARD);
+		int[] start = Seeds.findZero(core);
+		startRow = start[0];
+		startCol = start[1];
+	}
+
+	@Setup(Level.Invocation)
+	public void setupInvocation() {
+		core.init(rowSize, colSize, mineSize, Seeds.BOARD);
+	}
+
+	@Benchmark
+	public int open() {
+		core.open(startRow, startCol);
+		return core.remain;
+	}
+
+}
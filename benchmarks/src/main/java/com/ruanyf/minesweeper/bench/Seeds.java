@@ -0,0 +1,38 @@
+package com.ruanyf.minesweeper.bench;
+
+import com.ruanyf.minesweeper.Core;
+
+/**
+ * 基准使用的固定种子与辅助方法 (保证各版本间的结果可比较)
+ *
+ * @author Yaofeng Ruan
+ */
+final class Seeds {
+
+	static final long BOARD = 20180415L;
+	static final long CELLS = 20180329L;
+
+	private Seeds() {
+	}
+
+	/**
+	 * 找到最靠近中央的周围无雷的格子 (用作翻开的起点)
+	 *
+	 * @return { 行索引, 列索引 }
+	 */
+	static int[] findZero(Core core) {
+		int centerRow = core.getRowSize() / 2;
+		int centerCol = core.getColSize() / 2;
+		for (int radius = 0; radius < Math.max(core.getRowSize(), core.getColSize()); radius++) {
+			for (int row = centerRow - radius; row <= centerRow + radius; row++) {
+				for (int col = centerCol - radius; col <= centerCol + radius; col++) {
+					if (!core.isOutOfBound(row, col) && core.getGrid(row, col) == '0') {
+						return new int[] { row, col };
+					}
+				}
+			}
+		}
+		throw new IllegalStateException("no zero cell");
+	}
+
+}
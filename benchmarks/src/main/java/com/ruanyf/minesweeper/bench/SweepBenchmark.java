@@ -0,0 +1,90 @@
+package com.ruanyf.minesweeper.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ruanyf.minesweeper.Core;
+
+/**
+ * Core.sweep 基准 (Expert 密度的棋盘上, 对一个周边地雷均已标记的数字格快速排雷)
+ *
+ * @author Yaofeng Ruan
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 200)
+@Measurement(iterations = 1000)
+@Fork(1)
+public class SweepBenchmark {
+
+	private final Core core = new Core();
+	private int startRow, startCol;
+	private int sweepRow = -1, sweepCol = -1;
+
+	@Setup(Level.Trial)
+	public void setupTrial() {
+		core.init(Core.SIZE_HARD_ROW, Core.SIZE_HARD_COL, Core.SIZE_HARD_MINE, Seeds.BOARD);
+		int[] start = Seeds.findZero(core);
+		startRow = start[0];
+		startCol = start[1];
+		core.open(startRow, startCol);
+
+		// 找一个周边有未翻开的安全格子的数字格
+		for (int row = 0; row < core.getRowSize() && sweepRow < 0; row++) {
+			for (int col = 0; col < core.getColSize() && sweepRow < 0; col++) {
+				if (core.getStatus(row, col) == Core.STAT_OPEN && core.getGrid(row, col) > '0' && hasCoveredSafe(row, col)) {
+					sweepRow = row;
+					sweepCol = col;
+				}
+			}
+		}
+		if (sweepRow < 0) {
+			throw new IllegalStateException("no cell to sweep");
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void setupInvocation() {
+		core.init(Core.SIZE_HARD_ROW, Core.SIZE_HARD_COL, Core.SIZE_HARD_MINE, Seeds.BOARD);
+		core.open(startRow, startCol);
+
+		// 标记周边的地雷
+		for (int i = 0; i < Core.OFFSET_AROUND_ROW.length; i++) {
+			int r = sweepRow + Core.OFFSET_AROUND_ROW[i];
+			int c = sweepCol + Core.OFFSET_AROUND_COL[i];
+			if (!core.isOutOfBound(r, c) && core.isMine(r, c)) {
+				core.flag(r, c);
+			}
+		}
+	}
+
+	@Benchmark
+	public int sweep() {
+		core.sweep(sweepRow, sweepCol);
+		return core.remain;
+	}
+
+	private boolean hasCoveredSafe(int row, int col) {
+		for (int i = 0; i < Core.OFFSET_AROUND_ROW.length; i++) {
+			int r = row + Core.OFFSET_AROUND_ROW[i];
+			int c = col + Core.OFFSET_AROUND_COL[i];
+			if (!core.isOutOfBound(r, c) && !core.isMine(r, c) && core.getStatus(r, c) == Core.STAT_COVER) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,213 @@
+package com.ruanyf.minesweeper;
+
+import java.util.Arrays;
+
+/**
+ * 紧凑的扫雷棋盘
+ * <p>
+ * 所有格子存放在一个一维 byte 数组中 (每格 1 字节)，外围多出一圈哨兵格子，
+ * 因此遍历任意格子的周边 8 格时都无需判断越界。
+ * <p>
+ * 单个格子的字节布局：
+ *
+ * <pre>
+ * bit 7   : 哨兵 (棋盘外围)
+ * bit 5~6 : 格子状态 (Core.STAT_*)
+ * bit 4   : 地雷
+ * bit 0~3 : 周围地雷数 (0~8)
+ * </pre>
+ *
+ * 哨兵格子的状态恒为 {@link Core#STAT_OPEN} 且不含地雷，永远不会被翻开、标记或计入地雷数。
+ * <p>
+ * 另有一个与 cells 等长的 around 数组，记录每个格子周边盖住 (未标记) 的格子数 (低4位)
+ * 与标记的格子数 (高4位)，由核心在格子状态改变时增量维护，快速排雷与求解器查询时只需读取一次。
+ * 哨兵格子的 around 没有意义。
+ *
+ * @author Yaofeng Ruan
+ */
+public class Board {
+
+	// 字节布局常量
+	public static final int MASK_COUNT = 0x0F;
+	public static final int BIT_MINE = 0x10;
+	public static final int SHIFT_STAT = 5;
+	public static final int MASK_STAT = 0x03 << SHIFT_STAT;
+	public static final int BIT_BORDER = 0x80;
+
+	// 周边计数的字节布局常量
+	public static final int MASK_COVERED = 0x0F;
+	public static final int SHIFT_FLAGS = 4;
+	// 周边一格由盖住变为标记时, 周边计数的增量 (盖住数 -1, 标记数 +1)
+	public static final int DELTA_COVER_TO_FLAG = (1 << SHIFT_FLAGS) - 1;
+
+	// 预置的格子字节
+	public static final byte CELL_COVER = (byte) (Core.STAT_COVER << SHIFT_STAT);
+	public static final byte CELL_BORDER = (byte) (BIT_BORDER | Core.STAT_OPEN << SHIFT_STAT);
+
+	public final int rowSize; // 行数 (不含哨兵)
+	public final int colSize; // 列数 (不含哨兵)
+	public final int stride; // 一行在数组中的跨度 (colSize + 2)
+
+	public final byte[] cells;
+	public final byte[] around; // 周边盖住的格子数与标记数
+
+	// 周边格子的下标偏移量 (与 Core.OFFSET_AROUND_ROW / Core.OFFSET_AROUND_COL 一一对应)
+	public final int[] offsetAround;
+
+	/**
+	 * 创建指定尺寸的棋盘 (所有格子盖住且无地雷)
+	 *
+	 * @param rowSize
+	 *            格子行数 (高度)
+	 * @param colSize
+	 *            格子列数 (宽度)
+	 */
+	public Board(int rowSize, int colSize) {
+		if (rowSize <= 0 || colSize <= 0 || (long) (rowSize + 2) * (colSize + 2) > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("Illegal board size: " + rowSize + "x" + colSize);
+		}
+		this.rowSize = rowSize;
+		this.colSize = colSize;
+		this.stride = colSize + 2;
+		this.cells = new byte[(rowSize + 2) * stride];
+		this.around = new byte[cells.length];
+
+		offsetAround = new int[Core.OFFSET_AROUND_ROW.length];
+		for (int i = 0; i < offsetAround.length; i++) {
+			offsetAround[i] = Core.OFFSET_AROUND_ROW[i] * stride + Core.OFFSET_AROUND_COL[i];
+		}
+
+		reset();
+	}
+
+	/**
+	 * 重置棋盘 (所有格子盖住且无地雷，重建哨兵)
+	 */
+	public void reset() {
+		Arrays.fill(cells, CELL_COVER);
+
+		// 首尾两行哨兵
+		Arrays.fill(cells, 0, stride, CELL_BORDER);
+		Arrays.fill(cells, cells.length - stride, cells.length, CELL_BORDER);
+
+		// 左右两列哨兵
+		for (int i = stride; i < cells.length - stride; i += stride) {
+			cells[i] = CELL_BORDER;
+			cells[i + stride - 1] = CELL_BORDER;
+		}
+
+		// 所有格子盖住: 内部格子周边 8 格都盖住, 只需修正靠边的格子
+		Arrays.fill(around, (byte) 8);
+		for (int col = 0; col < colSize; col++) {
+			around[index(0, col)] = coveredAtStart(0, col);
+			around[index(rowSize - 1, col)] = coveredAtStart(rowSize - 1, col);
+		}
+		for (int row = 0; row < rowSize; row++) {
+			around[index(row, 0)] = coveredAtStart(row, 0);
+			around[index(row, colSize - 1)] = coveredAtStart(row, colSize - 1);
+		}
+	}
+
+	/**
+	 * 所有格子盖住时, 格子周边 (不含哨兵) 的格子数
+	 */
+	private byte coveredAtStart(int row, int col) {
+		int rows = Math.min(row + 1, rowSize - 1) - Math.max(row - 1, 0) + 1;
+		int cols = Math.min(col + 1, colSize - 1) - Math.max(col - 1, 0) + 1;
+		return (byte) (rows * cols - 1);
+	}
+
+	/**
+	 * 按格子的当前状态重新计算所有格子的周边计数 (直接改写了格子状态之后调用, 如载入存档)
+	 */
+	public void countAround() {
+		for (int row = 0; row < rowSize; row++) {
+			for (int i = index(row, 0), end = i + colSize; i < end; i++) {
+				int covered = 0, flags = 0;
+				for (int j = 0; j < offsetAround.length; j++) {
+					int stat = stat(cells[i + offsetAround[j]]);
+					covered += stat == Core.STAT_COVER ? 1 : 0;
+					flags += stat == Core.STAT_FLAG ? 1 : 0;
+				}
+				around[i] = (byte) (flags << SHIFT_FLAGS | covered);
+			}
+		}
+	}
+
+	/**
+	 * 取周边盖住 (未标记) 的格子数
+	 */
+	public static int covered(byte around) {
+		return around & MASK_COVERED;
+	}
+
+	/**
+	 * 取周边标记的格子数
+	 */
+	public static int flags(byte around) {
+		return (around & 0xFF) >> SHIFT_FLAGS;
+	}
+
+	/**
+	 * 判断是否与指定尺寸一致 (用于复用棋盘)
+	 */
+	public boolean isSize(int rowSize, int colSize) {
+		return this.rowSize == rowSize && this.colSize == colSize;
+	}
+
+	/**
+	 * 行列转换为数组下标
+	 *
+	 * @param row
+	 *            行索引 (从0起算)
+	 * @param col
+	 *            列索引 (从0起算)
+	 * @return 格子在 cells 中的下标
+	 */
+	public int index(int row, int col) {
+		return (row + 1) * stride + col + 1;
+	}
+
+	/**
+	 * 数组下标转换为行索引
+	 */
+	public int rowOf(int index) {
+		return index / stride - 1;
+	}
+
+	/**
+	 * 数组下标转换为列索引
+	 */
+	public int colOf(int index) {
+		return index % stride - 1;
+	}
+
+	/**
+	 * 取格子状态 (STAT_*)
+	 */
+	public static int stat(byte cell) {
+		return (cell & MASK_STAT) >> SHIFT_STAT;
+	}
+
+	/**
+	 * 判断格子是否为地雷
+	 */
+	public static boolean isMine(byte cell) {
+		return (cell & BIT_MINE) != 0;
+	}
+
+	/**
+	 * 取格子周围的地雷数
+	 */
+	public static int count(byte cell) {
+		return cell & MASK_COUNT;
+	}
+
+	/**
+	 * 以新状态替换格子原有状态
+	 */
+	public static byte withStat(byte cell, int stat) {
+		return (byte) (cell & ~MASK_STAT | stat << SHIFT_STAT);
+	}
+
+}
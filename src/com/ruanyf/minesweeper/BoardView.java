@@ -0,0 +1,496 @@
+package com.ruanyf.minesweeper;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.InputEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.swing.JComponent;
+import javax.swing.JScrollPane;
+import javax.swing.JViewport;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+
+/**
+ * 棋盘控件 (整个棋盘只有一个控件)
+ * <p>
+ * 直接根据核心的状态绘制格子，每种格子外观 (数字、地雷、砖块、旗子等) 按当前尺寸预先绘制在共享的图集中
+ * (见 {@link ResourceCache})，绘制时只复制图片；只绘制裁剪区域 (滚动面板中的可见部分) 内的格子，
+ * 因此绘制开销与棋盘大小无关。按住 Ctrl 滚动鼠标滚轮可以缩放。
+ * <p>
+ * 绘制的是棋盘的镜像 (与 {@link Board#cells} 布局相同的副本)，只在 EDT 上按变化的格子从核心复制。
+ * 核心在工作线程中翻开大片格子时 (忙碌状态)，镜像按批次逐步更新，不会绘制出翻开到一半的状态；
+ * 忙碌期间的点击一律忽略。
+ *
+ * @author Yaofeng Ruan
+ */
+@SuppressWarnings("serial")
+public class BoardView extends JComponent implements Scrollable {
+
+	// 格子尺寸范围 (像素)
+	public static final int MIN_TILE_SIZE = 8;
+	public static final int MAX_TILE_SIZE = 96;
+
+	// 格子外观 (图片序号, 0~8 为翻开的数字格)
+	static final int GLYPH_MINE = 9; // 翻开的地雷
+	static final int GLYPH_DEAD = 10; // 爆炸的地雷
+	static final int GLYPH_COVER = 11; // 砖块
+	static final int GLYPH_FLAG = 12; // 旗子
+	static final int GLYPH_COVER_MINE = 13; // 游戏结束时未标记的雷
+	static final int GLYPH_FLAG_CORRECT = 14; // 游戏结束时标记正确的雷
+	static final int GLYPH_FLAG_WRONG = 15; // 游戏结束时标记错误的雷
+	static final int GLYPH_COVER_FOCUS = 16; // 鼠标所在的砖块
+	static final int GLYPH_FLAG_FOCUS = 17; // 鼠标所在的旗子
+	static final int GLYPH_COVER_DOWN = 18; // 按下的砖块
+	static final int GLYPH_SIZE = 19;
+
+	// 鼠标按键
+	private static final int BTN_L = MouseEvent.BUTTON1_DOWN_MASK;
+	private static final int BTN_M = MouseEvent.BUTTON2_DOWN_MASK;
+	private static final int BTN_R = MouseEvent.BUTTON3_DOWN_MASK;
+	private static final int BTN_L_R = MouseEvent.BUTTON1_DOWN_MASK + MouseEvent.BUTTON3_DOWN_MASK;
+
+	/**
+	 * 格子操作的监听器 (坐标均为格子的行列索引)
+	 */
+	public interface CellListener {
+
+		void open(int row, int col);
+
+		void flag(int row, int col);
+
+		void sweep(int row, int col);
+
+	}
+
+	private final Core core;
+	private Board board; // 核心当前的棋盘 (只读取尺寸与下标)
+	private byte[] shown; // 棋盘的镜像 (绘制用)
+	private Set<Integer> flagged = new HashSet<>(); // 镜像中插了旗子的格子 (棋盘下标, 游戏结束时只需更新雷和旗子)
+	private boolean isOver; // 镜像中的游戏是否已结束 (踩雷)
+	private int deadRow, deadCol;
+	private boolean isBusy; // 核心正在工作线程中翻开格子
+	private final Color themeColor;
+	private final Color themeFocusColor;
+	private CellListener listener;
+
+	// 鼠标状态 (只有状态改变的格子才重绘)
+	private int hoverRow = -1, hoverCol = -1; // 鼠标所在的格子
+	private int mask; // 当前按下的按键
+
+	private int tileSize;
+	private ResourceCache.Atlas atlas; // 当前尺寸的格子图集 (共享)
+
+	/**
+	 * 创建绑定到指定核心的棋盘控件
+	 *
+	 * @param core
+	 *            游戏核心
+	 * @param tileSize
+	 *            格子尺寸 (像素)
+	 * @param themeColor
+	 *            砖块颜色
+	 * @param themeFocusColor
+	 *            鼠标所在砖块的颜色
+	 */
+	public BoardView(Core core, int tileSize, Color themeColor, Color themeFocusColor) {
+		this.core = core;
+		this.themeColor = themeColor;
+		this.themeFocusColor = themeFocusColor;
+		sync();
+		setTileSize(tileSize);
+
+		/*
+		 * 整个棋盘只有这一个鼠标监听器, 由坐标直接算出所在的格子 (与棋盘大小无关)。
+		 * 按下时记录按键, 要操作的格子以松开鼠标时鼠标所在的格子为准,
+		 * 鼠标移出棋盘后松开则不操作。
+		 */
+		MouseAdapter mouseListener = new MouseAdapter() {
+
+			@Override
+			public void mouseMoved(MouseEvent e) {
+				setHover(rowAt(e.getY()), colAt(e.getX()));
+			}
+
+			@Override
+			public void mouseDragged(MouseEvent e) {
+				setHover(rowAt(e.getY()), colAt(e.getX()));
+			}
+
+			@Override
+			public void mouseExited(MouseEvent e) {
+				setHover(-1, -1);
+			}
+
+			@Override
+			public void mousePressed(MouseEvent e) {
+				mask = e.getModifiersEx() & (BTN_L | BTN_M | BTN_R); // 按下鼠标时记录鼠标按键
+				setHover(rowAt(e.getY()), colAt(e.getX()));
+				repaintAround(hoverRow, hoverCol, 1);
+			}
+
+			@Override
+			public void mouseReleased(MouseEvent e) {
+				int row = rowAt(e.getY());
+				int col = colAt(e.getX());
+				int released = mask;
+				repaintAround(hoverRow, hoverCol, 1);
+				mask = 0; // 重置按键标识
+				setHover(row, col);
+
+				if (listener != null && !isBusy && row >= 0 && col >= 0) {
+					if (released == BTN_L) {
+						listener.open(row, col); // 左键翻开
+					} else if (released == BTN_R) {
+						listener.flag(row, col); // 右键标记
+					} else if (released == BTN_L_R || released == BTN_M) {
+						listener.sweep(row, col); // 左键+右键快速排雷(或中键)
+					}
+				}
+			}
+
+			@Override
+			public void mouseWheelMoved(MouseWheelEvent e) {
+				if ((e.getModifiersEx() & InputEvent.CTRL_DOWN_MASK) != 0) {
+					zoom(e.getPoint(), e.getWheelRotation() < 0 ? tileSize * 5 / 4 + 1 : tileSize * 4 / 5);
+				} else {
+					// 普通滚动交给滚动面板
+					JScrollPane scrollPane = (JScrollPane) SwingUtilities.getAncestorOfClass(JScrollPane.class, BoardView.this);
+					if (scrollPane != null) {
+						scrollPane.dispatchEvent(SwingUtilities.convertMouseEvent(BoardView.this, e, scrollPane));
+					}
+				}
+			}
+
+		};
+		addMouseListener(mouseListener);
+		addMouseMotionListener(mouseListener);
+		addMouseWheelListener(mouseListener);
+	}
+
+	/**
+	 * 更新鼠标所在的格子 (只重绘受影响的格子)
+	 */
+	private void setHover(int row, int col) {
+		if (col < 0) {
+			row = -1;
+		} else if (row < 0) {
+			col = -1;
+		}
+		if (row == hoverRow && col == hoverCol) {
+			return;
+		}
+		int radius = isChord() ? 1 : 0;
+		repaintAround(hoverRow, hoverCol, radius);
+		hoverRow = row;
+		hoverCol = col;
+		repaintAround(row, col, radius);
+	}
+
+	/**
+	 * 是否按下了快速排雷的按键 (左键+右键或中键)
+	 */
+	private boolean isChord() {
+		return mask == BTN_L_R || mask == BTN_M;
+	}
+
+	/**
+	 * 重绘以指定格子为中心的区域
+	 *
+	 * @param radius
+	 *            半径 (0: 只有该格子, 1: 周边 3x3)
+	 */
+	private void repaintAround(int row, int col, int radius) {
+		if (row >= 0 && col >= 0) {
+			repaint((col - radius) * tileSize, (row - radius) * tileSize, (radius * 2 + 1) * tileSize, (radius * 2 + 1) * tileSize);
+		}
+	}
+
+	/**
+	 * 设置格子操作的监听器
+	 */
+	public void setCellListener(CellListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * 获取格子尺寸 (像素)
+	 */
+	public int getTileSize() {
+		return tileSize;
+	}
+
+	/**
+	 * 设置格子尺寸 (像素), 并按新尺寸重新绘制格子图片
+	 *
+	 * @param tileSize
+	 *            格子尺寸 (限定在 MIN_TILE_SIZE ~ MAX_TILE_SIZE 之间)
+	 */
+	public void setTileSize(int tileSize) {
+		tileSize = Math.max(MIN_TILE_SIZE, Math.min(MAX_TILE_SIZE, tileSize));
+		if (tileSize == this.tileSize) {
+			return;
+		}
+		this.tileSize = tileSize;
+		atlas = ResourceCache.getAtlas(tileSize, scale(), themeColor, themeFocusColor);
+		revalidate();
+		repaint();
+	}
+
+	@Override
+	public void addNotify() {
+		super.addNotify();
+		// 显示在窗口上之后才能得知显示器的缩放比例
+		atlas = ResourceCache.getAtlas(tileSize, scale(), themeColor, themeFocusColor);
+	}
+
+	/**
+	 * 获取显示器的缩放比例 (尚未显示时为1)
+	 */
+	private double scale() {
+		GraphicsConfiguration gc = getGraphicsConfiguration();
+		return gc == null ? 1 : gc.getDefaultTransform().getScaleX();
+	}
+
+	/**
+	 * 以指定点为中心缩放 (该点下的格子保持在原位置)
+	 *
+	 * @param anchor
+	 *            缩放中心 (控件坐标)
+	 * @param newSize
+	 *            新的格子尺寸
+	 */
+	private void zoom(Point anchor, int newSize) {
+		int oldSize = tileSize;
+		setTileSize(newSize);
+		if (tileSize == oldSize || !(getParent() instanceof JViewport)) {
+			return;
+		}
+
+		JViewport viewport = (JViewport) getParent();
+		Point pos = viewport.getViewPosition();
+		int x = (int) ((long) anchor.x * tileSize / oldSize) - (anchor.x - pos.x);
+		int y = (int) ((long) anchor.y * tileSize / oldSize) - (anchor.y - pos.y);
+		viewport.setViewSize(getPreferredSize());
+		viewport.setViewPosition(new Point(Math.max(0, x), Math.max(0, y)));
+	}
+
+	/**
+	 * 获取指定纵坐标所在格子的行索引
+	 *
+	 * @return 行索引, 不在棋盘内时返回-1
+	 */
+	public int rowAt(int y) {
+		int row = y >= 0 ? y / tileSize : -1;
+		return row < board.rowSize ? row : -1;
+	}
+
+	/**
+	 * 获取指定横坐标所在格子的列索引
+	 *
+	 * @return 列索引, 不在棋盘内时返回-1
+	 */
+	public int colAt(int x) {
+		int col = x >= 0 ? x / tileSize : -1;
+		return col < board.colSize ? col : -1;
+	}
+
+	/**
+	 * 按核心的状态重建整个镜像并重绘 (开始、重新初始化核心时调用, 核心不能正在工作)
+	 */
+	public void sync() {
+		board = core.getBoard();
+		if (shown == null || shown.length != board.cells.length) {
+			shown = board.cells.clone();
+		} else {
+			System.arraycopy(board.cells, 0, shown, 0, shown.length);
+		}
+		flagged.clear();
+		for (int i = 0; i < shown.length; i++) {
+			if (Board.stat(shown[i]) == Core.STAT_FLAG) {
+				flagged.add(i);
+			}
+		}
+		isOver = core.isGameover;
+		deadRow = core.deadRow;
+		deadCol = core.deadCol;
+		repaint();
+	}
+
+	/**
+	 * 从核心复制上一次操作改变了状态的格子并重绘 (核心不能正在工作)
+	 */
+	public void applyChanged() {
+		int size = core.getChangedSize();
+		int[] indices = new int[size];
+		for (int i = 0; i < size; i++) {
+			indices[i] = core.getChanged(i);
+		}
+		apply(indices);
+	}
+
+	/**
+	 * 从核心复制一批已经翻开的格子并重绘 (合并为一个矩形区域)
+	 * <p>
+	 * 核心可以正在工作线程中继续翻开其他格子：已翻开的格子不会再改变，
+	 * 且这批下标是在翻开之后才交给 EDT 的。
+	 *
+	 * @param indices
+	 *            棋盘下标
+	 */
+	public void apply(int[] indices) {
+		if (indices.length == 0) {
+			return;
+		}
+		byte[] cells = board.cells;
+		int minRow = Integer.MAX_VALUE, minCol = Integer.MAX_VALUE;
+		int maxRow = -1, maxCol = -1;
+		for (int index : indices) {
+			shown[index] = cells[index];
+			if (Board.stat(cells[index]) == Core.STAT_FLAG) {
+				flagged.add(index);
+			} else {
+				flagged.remove(index);
+			}
+			int r = board.rowOf(index);
+			int c = board.colOf(index);
+			minRow = Math.min(minRow, r);
+			maxRow = Math.max(maxRow, r);
+			minCol = Math.min(minCol, c);
+			maxCol = Math.max(maxCol, c);
+		}
+		repaint(minCol * tileSize, minRow * tileSize, (maxCol - minCol + 1) * tileSize, (maxRow - minRow + 1) * tileSize);
+	}
+
+	/**
+	 * 游戏结束 (踩雷) 时标出所有雷的位置 (核心不能正在工作)
+	 * <p>
+	 * 结束时外观会变化的只有地雷、旗子和鼠标周围的格子，只复制并重绘这些格子。
+	 */
+	public void showMines() {
+		byte[] cells = board.cells;
+		isOver = core.isGameover;
+		deadRow = core.deadRow;
+		deadCol = core.deadCol;
+		for (int i = 0; i < core.getMineSize(); i++) {
+			int row = core.getMineRow(i);
+			int col = core.getMineCol(i);
+			int index = board.index(row, col);
+			shown[index] = cells[index];
+			repaintAround(row, col, 0);
+		}
+		for (int index : flagged) {
+			shown[index] = cells[index];
+			repaintAround(board.rowOf(index), board.colOf(index), 0);
+		}
+		repaintAround(hoverRow, hoverCol, 1);
+	}
+
+	/**
+	 * 设置忙碌状态 (忙碌期间忽略棋盘上的点击)
+	 */
+	public void setBusy(boolean isBusy) {
+		this.isBusy = isBusy;
+	}
+
+	public boolean isBusy() {
+		return isBusy;
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		Rectangle clip = g.getClipBounds();
+		if (clip == null) {
+			clip = new Rectangle(0, 0, getWidth(), getHeight());
+		}
+
+		// 只绘制裁剪区域内的格子
+		int rowFrom = Math.max(0, clip.y / tileSize);
+		int rowTo = Math.min(board.rowSize - 1, (clip.y + clip.height - 1) / tileSize);
+		int colFrom = Math.max(0, clip.x / tileSize);
+		int colTo = Math.min(board.colSize - 1, (clip.x + clip.width - 1) / tileSize);
+
+		for (int r = rowFrom; r <= rowTo; r++) {
+			for (int c = colFrom; c <= colTo; c++) {
+				atlas.draw(g, glyphOf(r, c), c * tileSize, r * tileSize);
+			}
+		}
+	}
+
+	/**
+	 * 根据镜像中格子的状态确定格子的外观
+	 */
+	int glyphOf(int row, int col) {
+		byte cell = shown[board.index(row, col)];
+		int status = Board.stat(cell);
+		if (status == Core.STAT_OPEN) {
+			if (!Board.isMine(cell)) {
+				return Board.count(cell);
+			}
+			return isOver && row == deadRow && col == deadCol ? GLYPH_DEAD : GLYPH_MINE;
+		}
+
+		// 游戏结束则标出雷的位置
+		if (isOver) {
+			boolean isMine = Board.isMine(cell);
+			if (status == Core.STAT_FLAG) {
+				return isMine ? GLYPH_FLAG_CORRECT : GLYPH_FLAG_WRONG;
+			} else if (isMine) {
+				return GLYPH_COVER_MINE;
+			}
+		}
+		if (isOver || Math.abs(row - hoverRow) > 1 || Math.abs(col - hoverCol) > 1) {
+			return status == Core.STAT_FLAG ? GLYPH_FLAG : GLYPH_COVER;
+		}
+
+		// 鼠标所在的格子 (快速排雷时周边 3x3 的砖块都显示为按下)
+		boolean isHover = row == hoverRow && col == hoverCol;
+		if (status == Core.STAT_COVER && (isChord() || isHover && mask == BTN_L)) {
+			return GLYPH_COVER_DOWN;
+		} else if (isHover) {
+			return status == Core.STAT_FLAG ? GLYPH_FLAG_FOCUS : GLYPH_COVER_FOCUS;
+		}
+		return status == Core.STAT_FLAG ? GLYPH_FLAG : GLYPH_COVER;
+	}
+
+	@Override
+	public Dimension getPreferredSize() {
+		return new Dimension(board.colSize * tileSize, board.rowSize * tileSize);
+	}
+
+	@Override
+	public Dimension getPreferredScrollableViewportSize() {
+		return getPreferredSize();
+	}
+
+	@Override
+	public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+		return tileSize;
+	}
+
+	@Override
+	public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+		int length = orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+		return Math.max(tileSize, length - tileSize);
+	}
+
+	@Override
+	public boolean getScrollableTracksViewportWidth() {
+		return false;
+	}
+
+	@Override
+	public boolean getScrollableTracksViewportHeight() {
+		return false;
+	}
+
+}
@@ -1,6 +1,9 @@
 package com.ruanyf.minesweeper;
 
-import java.util.Scanner;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
 
 /**
  * 控制台扫雷
@@ -11,51 +14,324 @@ public class CUI {
 
 	public static final char EMPTY = ' ';
 	public static final char COVERED = '#';
+	public static final char FLAGGED = 'F';
 
 	public static final boolean ISDEBUG = false;
 
 	private Core core = new Core();
+	private ConsoleRenderer renderer;
+	private Recording recording = new Recording(); // 对局记录 (每局结束时保存)
+	private boolean isLoaded; // 是否从存档继续 (不记录)
 
 	/**
 	 * 应用程序入口
 	 * 
 	 * @param args
+	 *            [行数 列数 雷数] [-seed 种子] [-ansi] (ANSI 模式下只重写变化的格子)
+	 *            [-protocol] (协议模式, 供程序通过标准输入输出操作, 见 {@link Protocol})
+	 *            [-load 存档] (从存档继续, 见 {@link Snapshot})
+	 *            [-endless [目录]] (无尽模式, 见 {@link World}; 目录中已有世界时继续)
+	 *            [-metrics] (记录运行指标, 游戏中输入 metrics 或退出时输出, 见 {@link Metrics})
 	 */
-	public static void main(String[] args) {
+	public static void main(String[] args) throws IOException {
 		CUI cui = new CUI();
-		cui.start();
+		boolean isAnsi = false;
+		boolean isProtocol = false;
+		Long seed = null;
+		File snapshot = null;
+		File endless = null;
+		int[] size = { Core.SIZE_EASY_ROW, Core.SIZE_EASY_COL, Core.SIZE_EASY_MINE };
+		int n = 0;
+		for (int i = 0; i < args.length; i++) {
+			if ("-ansi".equals(args[i])) {
+				isAnsi = true;
+			} else if ("-protocol".equals(args[i])) {
+				isProtocol = true;
+			} else if ("-metrics".equals(args[i])) {
+				Metrics.enable();
+			} else if ("-seed".equals(args[i]) && i + 1 < args.length) {
+				seed = Long.parseLong(args[++i]);
+			} else if ("-load".equals(args[i]) && i + 1 < args.length) {
+				snapshot = new File(args[++i]);
+			} else if ("-endless".equals(args[i])) {
+				boolean hasDir = i + 1 < args.length && !args[i + 1].startsWith("-");
+				endless = new File(hasDir ? args[++i] : World.PATH_DEFAULT_DIR);
+			} else if (n < size.length) {
+				size[n++] = Integer.parseInt(args[i]);
+			}
+		}
+
+		Metrics.printOnExit(System.err);
+
+		if (endless != null) {
+			World world;
+			if (World.exists(endless)) {
+				world = World.load(endless, World.DEFAULT_CACHE_SIZE);
+			} else {
+				world = World.create(endless, seed != null ? seed : System.nanoTime(), World.DEFAULT_MINES_PER_CHUNK, World.DEFAULT_CACHE_SIZE);
+			}
+			cui.startEndless(world);
+			return;
+		}
+
+		if (snapshot != null) {
+			Snapshot.load(cui.core, snapshot);
+			cui.isLoaded = true;
+		}
+
+		if (isProtocol) {
+			// 指定了尺寸或种子时先开始一局, 否则等待 new 命令
+			if (snapshot == null && (n == size.length || seed != null)) {
+				cui.init(size[0], size[1], size[2], seed);
+			}
+			new Protocol(cui.core).run(System.in, System.out);
+		} else {
+			if (snapshot == null) {
+				cui.init(size[0], size[1], size[2], seed);
+			}
+			cui.start(isAnsi);
+		}
+	}
+
+	/**
+	 * 初始化核心 (延迟生成, 保证第一次翻开不会踩雷)
+	 * 
+	 * @param seed
+	 *            随机种子 (为null时随机)
+	 */
+	private void init(int rowSize, int colSize, int mineSize, Long seed) {
+		if (seed != null) {
+			core.initLazy(rowSize, colSize, mineSize, seed);
+		} else {
+			core.initLazy(rowSize, colSize, mineSize);
+		}
+	}
+
+	/**
+	 * 开始游戏 (初级难度)
+	 */
+	public void start() throws IOException {
+		init(Core.SIZE_EASY_ROW, Core.SIZE_EASY_COL, Core.SIZE_EASY_MINE, null);
+		start(false);
 	}
 
 	/**
-	 * 开始游戏
+	 * 开始游戏 (核心已初始化)
+	 * 
+	 * @param isAnsi
+	 *            是否使用 ANSI 控制序列
 	 */
-	public void start() {
-		core.init();
+	public void start(boolean isAnsi) throws IOException {
+		// 记录本局 (核心重新初始化时从头记录, 从存档继续的对局无法记录)
+		if (!isLoaded) {
+			core.recording = recording;
+			recording.start(core);
+		}
+
+		// 棋盘超出终端大小时只显示视口内的部分
+		renderer = new ConsoleRenderer(core, System.out, isAnsi);
+		renderer.fit(getEnv("COLUMNS", 80), getEnv("LINES", 24), ISDEBUG);
 
-		Scanner sc = new Scanner(System.in);
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
 
-		while (!core.isGameover) {
+		while (!core.isGameover && !core.isWin) {
 			print(ISDEBUG);
 
 			System.out.print("Input \"row col\" to sweep > ");
-			int row = sc.nextInt();
-			int col = sc.nextInt();
-			core.open(row, col);
-			
-			// 失败判定
-			if (core.isGameover) {
-				print(ISDEBUG);
-				gameover();
+			System.out.flush();
+			String line = in.readLine();
+			if (line == null) {
+				break;
+			}
+			line = line.trim();
+
+			// 移动视口
+			if ("w".equals(line)) {
+				renderer.scroll(-1, 0);
+			} else if ("s".equals(line)) {
+				renderer.scroll(1, 0);
+			} else if ("a".equals(line)) {
+				renderer.scroll(0, -1);
+			} else if ("d".equals(line)) {
+				renderer.scroll(0, 1);
+			} else if (line.startsWith("save")) {
+				save(line.substring(4).trim());
+				renderer.invalidate();
+			} else if ("metrics".equals(line)) {
+				System.out.print(Metrics.export());
+				renderer.invalidate();
+			} else {
+				String[] words = line.split("\\s+");
+				try {
+					int row = Integer.parseInt(words[0]);
+					int col = Integer.parseInt(words[1]);
+					if (!core.isOutOfBound(row, col)) {
+						core.open(row, col);
+					}
+				} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+					// 忽略无法识别的输入
+				}
+			}
+		}
+
+		if ((core.isGameover || core.isWin) && core.recording != null) {
+			recording.save(new File(Recording.PATH_DEFAULT_DIR));
+		}
+
+		// 失败判定
+		if (core.isGameover) {
+			print(ISDEBUG);
+			gameover();
+		}
+
+		// 胜利判定
+		if (core.isWin) {
+			print(ISDEBUG);
+			gamewin();
+		}
+	}
+
+	/**
+	 * 无尽模式 (退出时保存世界, 下次以同一目录继续)
+	 * <p>
+	 * "行 列" 翻开, "f 行 列" 标记, "c 行 列" 快速排雷, w/a/s/d 移动视口, q 保存并退出。坐标可以为负数。
+	 */
+	public void startEndless(World world) throws IOException {
+		int viewRows = Math.max(1, getEnv("LINES", 24) - 5);
+		int viewCols = Math.max(1, (getEnv("COLUMNS", 80) - 8) / 2);
+		long viewRow = -viewRows / 2;
+		long viewCol = -viewCols / 2;
+		StringBuilder frame = new StringBuilder(4096);
+
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+
+		while (!world.isGameover) {
+			printWorld(world, frame, viewRow, viewCol, viewRows, viewCols);
+
+			System.out.print("Input \"row col\" to sweep, \"f row col\" to flag, \"q\" to quit > ");
+			System.out.flush();
+			String line = in.readLine();
+			if (line == null) {
+				break;
+			}
+			line = line.trim();
+
+			if ("w".equals(line)) {
+				viewRow -= Math.max(1, viewRows / 2);
+			} else if ("s".equals(line)) {
+				viewRow += Math.max(1, viewRows / 2);
+			} else if ("a".equals(line)) {
+				viewCol -= Math.max(1, viewCols / 2);
+			} else if ("d".equals(line)) {
+				viewCol += Math.max(1, viewCols / 2);
+			} else if ("q".equals(line)) {
+				break;
+			} else {
+				String[] words = line.split("\\s+");
+				try {
+					if ("f".equals(words[0])) {
+						world.flag(Long.parseLong(words[1]), Long.parseLong(words[2]));
+					} else if ("c".equals(words[0])) {
+						world.sweep(Long.parseLong(words[1]), Long.parseLong(words[2]));
+					} else {
+						world.open(Long.parseLong(words[0]), Long.parseLong(words[1]));
+					}
+				} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+					// 忽略无法识别的输入
+				}
+			}
+		}
+
+		world.save();
+		if (world.isGameover) {
+			printWorld(world, frame, viewRow, viewCol, viewRows, viewCols);
+			gameover();
+		}
+		System.out.println("Score " + world.opened);
+	}
+
+	/**
+	 * 输出无尽模式的视口 (行号为完整的行索引, 列号只显示后两位)
+	 */
+	private static void printWorld(World world, StringBuilder frame, long viewRow, long viewCol, int viewRows, int viewCols) {
+		int labelWidth = Math.max(Long.toString(viewRow).length(), Long.toString(viewRow + viewRows - 1).length());
+		frame.setLength(0);
+		frame.append('\n');
+		for (int i = 0; i <= labelWidth; i++) {
+			frame.append(' ');
+		}
+		frame.append('|');
+		for (long col = viewCol; col < viewCol + viewCols; col++) {
+			long label = Math.floorMod(col, 100L);
+			frame.append(label < 10 ? " " : "").append(label);
+		}
+		frame.append('\n');
+		for (int i = 0; i <= labelWidth; i++) {
+			frame.append('-');
+		}
+		frame.append('+');
+		for (int i = 0; i < viewCols; i++) {
+			frame.append("--");
+		}
+		frame.append('\n');
+
+		for (long row = viewRow; row < viewRow + viewRows; row++) {
+			String label = Long.toString(row);
+			for (int i = label.length(); i < labelWidth; i++) {
+				frame.append(' ');
 			}
-			
-			// 胜利判定
-			if (core.isWin) {
-				print(ISDEBUG);
-				gamewin();
+			frame.append(label).append(" |");
+			for (long col = viewCol; col < viewCol + viewCols; col++) {
+				int status = world.getStatus(row, col);
+				char grid = world.getGrid(row, col);
+				char c;
+				if (world.isGameover && grid == Core.MINE && status != Core.STAT_FLAG) {
+					c = Core.MINE;
+				} else if (status == Core.STAT_OPEN) {
+					c = grid == '0' ? EMPTY : grid;
+				} else if (status == Core.STAT_FLAG) {
+					c = FLAGGED;
+				} else {
+					c = COVERED;
+				}
+				frame.append(' ').append(c);
 			}
+			frame.append('\n');
 		}
+		frame.append("view ").append(viewRow).append(',').append(viewCol).append(", score ").append(world.opened)
+				.append(", flags ").append(world.flags).append(" (w/a/s/d to scroll)\n");
+		System.out.print(frame);
+		System.out.flush();
+	}
 
-		sc.close();
+	/**
+	 * 保存当前对局 (之后可以用 -load 继续)
+	 * 
+	 * @param path
+	 *            存档文件 (为空时保存到默认目录)
+	 */
+	private void save(String path) throws IOException {
+		File file;
+		if (path.isEmpty()) {
+			File dir = new File(Snapshot.PATH_DEFAULT_DIR);
+			dir.mkdirs();
+			file = new File(dir, System.currentTimeMillis() + Snapshot.EXTENSION);
+		} else {
+			file = new File(path);
+		}
+		Snapshot.save(core, file);
+		System.out.println("Saved to " + file);
+	}
+
+	/**
+	 * 读取表示终端尺寸的环境变量
+	 */
+	private static int getEnv(String name, int defaultValue) {
+		try {
+			return Integer.parseInt(System.getenv(name));
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
 	}
 
 	/**
@@ -79,63 +355,11 @@ public class CUI {
 	}
 
 	/**
-	 * 控制台输出当前状态
+	 * 控制台输出当前状态 (整帧写入缓冲区后一次性输出)
 	 * @param isDebug 是否开启调试 (同时打印完全翻开的表)
 	 */
-	public void print(boolean isDebug) {
-		// 顶部表头
-		System.out.print("\nMS |");
-		for (int i = 0; i < core.grids[0].length; i++) {
-			System.out.printf("%2d", i);
-		}
-		// 调试模式副表表头
-		if (isDebug) {
-			System.out.print("\tMS |");
-			for (int i = 0; i < core.grids[0].length; i++) {
-				System.out.printf("%2d", i);
-			}
-		}
-		
-		// 分割线
-		System.out.print("\n---+");
-		for (int i = 0; i < core.grids[0].length; i++) {
-			System.out.print("--");
-		}
-		// 调试模式副表分割线
-		if (isDebug) {
-			System.out.print("\t---+");
-			for (int i = 0; i < core.grids[0].length; i++) {
-				System.out.print("--");
-			}
-		}
-		System.out.println();
-		
-		// 表内容
-		for (int row = 0; row < core.grids.length; row++) {
-			System.out.printf("%2d |", row); // 左侧表头
-			for (int col = 0; col < core.grids[row].length; col++) {
-				if (core.isGameover && core.grids[row][col] == Core.MINE) {
-					System.out.print(" " + Core.MINE);
-				} else if (core.status[row][col] == Core.STAT_OPEN) {
-					if (core.grids[row][col] == '0') {
-						System.out.print(" " + EMPTY);
-					} else {
-						System.out.print(" " + core.grids[row][col]);
-					}
-				} else {
-					System.out.print(" " + COVERED);
-				}
-			}
-			
-			// 调试模式副表内容
-			if (isDebug) {
-				System.out.printf("\t%2d |", row);
-				for (int col = 0; col < core.grids[row].length; col++) {
-					System.out.print(" " + core.grids[row][col]);
-				}
-			}
-			System.out.println();
-		}
+	public void print(boolean isDebug) throws IOException {
+		renderer.print(isDebug);
 	}
 
 }
@@ -0,0 +1,343 @@
+package com.ruanyf.minesweeper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * 控制台棋盘输出
+ * <p>
+ * 每一帧先写入一个复用的字节缓冲区，再一次性写出 (而不是每个格子调用一次 print)。
+ * 棋盘超出终端大小时只输出视口内的部分，视口可以移动。
+ * ANSI 模式下第一帧清屏后完整输出，之后只把光标移动到变化的格子上重写这些格子。
+ *
+ * @author Yaofeng Ruan
+ */
+public class ConsoleRenderer {
+
+	// ANSI 控制序列
+	private static final byte ESC = 0x1B;
+	private static final byte[] ANSI_CLEAR = { ESC, '[', 'H', ESC, '[', '2', 'J' }; // 光标归位并清屏
+	private static final byte[] ANSI_CLEAR_LINE = { ESC, '[', 'K' }; // 清除光标之后的内容
+
+	private static final int HEADER_LINES = 2; // 表头与分割线
+
+	private final Core core;
+	private final OutputStream out;
+	private final boolean isAnsi;
+
+	private byte[] buffer = new byte[4096];
+	private int size;
+
+	// 视口 (左上角的格子与可见的行列数)
+	private int viewRow, viewCol;
+	private int viewRows, viewCols;
+	private int labelWidth; // 左侧表头 (行号) 宽度
+
+	// ANSI 模式下屏幕上的内容是否与视口一致 (否则下一帧完整输出)
+	private boolean isDrawn;
+	private boolean isDrawnDebug;
+
+	/**
+	 * 创建绑定到指定核心的输出
+	 *
+	 * @param core
+	 *            游戏核心
+	 * @param out
+	 *            输出流
+	 * @param isAnsi
+	 *            是否使用 ANSI 控制序列 (增量输出)
+	 */
+	public ConsoleRenderer(Core core, OutputStream out, boolean isAnsi) {
+		this.core = core;
+		this.out = out;
+		this.isAnsi = isAnsi;
+	}
+
+	/**
+	 * 根据终端尺寸设置视口大小 (核心初始化之后调用)
+	 *
+	 * @param width
+	 *            终端宽度 (字符)
+	 * @param height
+	 *            终端高度 (行), 需留出表头、视口说明、输入提示以及输入后换行的一行
+	 * @param isDebug
+	 *            是否同时输出调试副表 (副表与主表平分宽度)
+	 */
+	public void fit(int width, int height, boolean isDebug) {
+		labelWidth = Math.max(2, digits(core.getRowSize() - 1));
+		int tableWidth = isDebug ? width / 2 : width;
+		viewCols = Math.max(1, Math.min(core.getColSize(), (tableWidth - labelWidth - 2) / 2));
+		// 一帧 = 表头 + 视口 + 视口说明 + 输入提示, 回车后终端还会滚动一行 (否则增量输出会错位一行)
+		viewRows = Math.max(1, Math.min(core.getRowSize(), height - HEADER_LINES - 3));
+		scrollTo(viewRow, viewCol);
+	}
+
+	/**
+	 * 移动视口 (自动限定在棋盘范围内)
+	 *
+	 * @param row
+	 *            视口左上角的行索引
+	 * @param col
+	 *            视口左上角的列索引
+	 */
+	public void scrollTo(int row, int col) {
+		row = Math.max(0, Math.min(core.getRowSize() - viewRows, row));
+		col = Math.max(0, Math.min(core.getColSize() - viewCols, col));
+		if (row != viewRow || col != viewCol) {
+			viewRow = row;
+			viewCol = col;
+			isDrawn = false;
+		}
+	}
+
+	/**
+	 * 按视口大小的一半移动视口
+	 *
+	 * @param dRow
+	 *            纵向方向 (-1 / 0 / 1)
+	 * @param dCol
+	 *            横向方向 (-1 / 0 / 1)
+	 */
+	public void scroll(int dRow, int dCol) {
+		scrollTo(viewRow + dRow * Math.max(1, viewRows / 2), viewCol + dCol * Math.max(1, viewCols / 2));
+	}
+
+	/**
+	 * 屏幕内容已被其他输出改变 (下一帧完整输出)
+	 */
+	public void invalidate() {
+		isDrawn = false;
+	}
+
+	public int getViewRow() {
+		return viewRow;
+	}
+
+	public int getViewCol() {
+		return viewCol;
+	}
+
+	public int getViewRows() {
+		return viewRows;
+	}
+
+	public int getViewCols() {
+		return viewCols;
+	}
+
+	/**
+	 * 输出当前状态: ANSI 模式下若屏幕内容仍有效则只重写上一次操作改变的格子, 否则输出完整的一帧
+	 *
+	 * @param isDebug
+	 *            是否开启调试 (同时输出完全翻开的副表)
+	 */
+	public void print(boolean isDebug) throws IOException {
+		if (viewRows == 0) {
+			fit(Integer.MAX_VALUE / 4, Integer.MAX_VALUE / 4, isDebug);
+		}
+
+		// 游戏结束时需要标出所有地雷, 完整输出
+		if (isAnsi && isDrawn && isDrawnDebug == isDebug && !core.isGameover) {
+			printChanged();
+		} else {
+			printFrame(isDebug);
+		}
+	}
+
+	/**
+	 * 输出完整的一帧 (调试副表在同一行的右侧)
+	 */
+	public void printFrame(boolean isDebug) throws IOException {
+		size = 0;
+		if (isAnsi) {
+			put(ANSI_CLEAR);
+		} else {
+			put('\n');
+		}
+
+		// 顶部表头 (列号超过两位时只显示后两位)
+		putHeader();
+		if (isDebug) {
+			put('\t');
+			putHeader();
+		}
+		put('\n');
+
+		// 分割线
+		putSeparator();
+		if (isDebug) {
+			put('\t');
+			putSeparator();
+		}
+		put('\n');
+
+		// 表内容
+		for (int row = viewRow; row < viewRow + viewRows; row++) {
+			putInt(row, labelWidth); // 左侧表头
+			put(' ');
+			put('|');
+			for (int col = viewCol; col < viewCol + viewCols; col++) {
+				put(' ');
+				put(cellChar(row, col));
+			}
+
+			// 调试模式副表内容
+			if (isDebug) {
+				put('\t');
+				putInt(row, labelWidth);
+				put(' ');
+				put('|');
+				for (int col = viewCol; col < viewCol + viewCols; col++) {
+					put(' ');
+					put(core.getGrid(row, col));
+				}
+			}
+			put('\n');
+		}
+
+		// 视口不是整个棋盘时显示位置
+		if (viewRows < core.getRowSize() || viewCols < core.getColSize()) {
+			putText("view ");
+			putInt(viewRow, 0);
+			put(',');
+			putInt(viewCol, 0);
+			putText(" of ");
+			putInt(core.getRowSize(), 0);
+			put('x');
+			putInt(core.getColSize(), 0);
+			putText(" (w/a/s/d to scroll)\n");
+		}
+
+		flush();
+		isDrawn = true;
+		isDrawnDebug = isDebug;
+	}
+
+	/**
+	 * 只重写上一次操作改变的格子 (ANSI 模式), 最后把光标移动到表格下方
+	 */
+	private void printChanged() throws IOException {
+		size = 0;
+		for (int i = 0; i < core.getChangedSize(); i++) {
+			int row = core.getChangedRow(i);
+			int col = core.getChangedCol(i);
+			if (row < viewRow || row >= viewRow + viewRows || col < viewCol || col >= viewCol + viewCols) {
+				continue; // 不在视口内
+			}
+			moveTo(HEADER_LINES + 1 + row - viewRow, labelWidth + 4 + (col - viewCol) * 2);
+			put(cellChar(row, col));
+		}
+		moveTo(HEADER_LINES + 1 + viewRows + (viewRows < core.getRowSize() || viewCols < core.getColSize() ? 1 : 0), 1);
+		put(ANSI_CLEAR_LINE);
+		flush();
+	}
+
+	/**
+	 * 格子在主表中显示的字符
+	 */
+	private char cellChar(int row, int col) {
+		int status = core.getStatus(row, col);
+		char grid = core.getGrid(row, col);
+		if (core.isGameover && grid == Core.MINE && status != Core.STAT_FLAG) {
+			return Core.MINE;
+		} else if (status == Core.STAT_OPEN) {
+			return grid == '0' ? CUI.EMPTY : grid;
+		} else if (status == Core.STAT_FLAG) {
+			return CUI.FLAGGED;
+		}
+		return CUI.COVERED;
+	}
+
+	private void putHeader() {
+		putText("MS");
+		for (int i = 2; i < labelWidth; i++) {
+			put(' ');
+		}
+		put(' ');
+		put('|');
+		for (int col = viewCol; col < viewCol + viewCols; col++) {
+			putInt(col % 100, 2);
+		}
+	}
+
+	private void putSeparator() {
+		for (int i = 0; i <= labelWidth; i++) {
+			put('-');
+		}
+		put('+');
+		for (int col = 0; col < viewCols; col++) {
+			put('-');
+			put('-');
+		}
+	}
+
+	/**
+	 * 移动光标 (行列均从1起算)
+	 */
+	private void moveTo(int line, int column) {
+		put((char) ESC);
+		put('[');
+		putInt(line, 0);
+		put(';');
+		putInt(column, 0);
+		put('H');
+	}
+
+	/**
+	 * 写入整数 (右对齐到指定宽度)
+	 */
+	private void putInt(int value, int width) {
+		int length = digits(value);
+		for (int i = length; i < width; i++) {
+			put(' ');
+		}
+		ensure(length);
+		for (int i = size + length - 1; i >= size; i--) {
+			buffer[i] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		size += length;
+	}
+
+	private static int digits(int value) {
+		int length = 1;
+		while (value >= 10) {
+			value /= 10;
+			length++;
+		}
+		return length;
+	}
+
+	private void putText(String text) {
+		for (int i = 0; i < text.length(); i++) {
+			put(text.charAt(i));
+		}
+	}
+
+	private void put(byte[] bytes) {
+		ensure(bytes.length);
+		System.arraycopy(bytes, 0, buffer, size, bytes.length);
+		size += bytes.length;
+	}
+
+	private void put(char c) {
+		ensure(1);
+		buffer[size++] = (byte) c;
+	}
+
+	private void ensure(int length) {
+		if (size + length > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+		}
+	}
+
+	/**
+	 * 一次性写出缓冲区
+	 */
+	private void flush() throws IOException {
+		out.write(buffer, 0, size);
+		out.flush();
+	}
+
+}
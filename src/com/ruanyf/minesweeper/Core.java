@@ -1,5 +1,11 @@
 package com.ruanyf.minesweeper;
 
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+
 /**
  * 扫雷游戏核心
  * 
@@ -28,6 +34,19 @@ public class Core {
 	public static final int STAT_COVER = 1;
 	public static final int STAT_FLAG = 2;
 
+	// 格子数达到此值时使用 Fork/Join 并行计算周围雷数
+	public static final int PARALLEL_THRESHOLD = 1 << 20;
+	// 并行计算时每个任务负责的最少行数
+	private static final int STRIP_MIN_ROWS = 64;
+
+	// 运行指标 (见 Metrics, 默认关闭)
+	private static final Metrics.Histogram INIT_NANOS = Metrics.histogram("core.init.nanos");
+	private static final Metrics.Histogram OPEN_NANOS = Metrics.histogram("core.open.nanos");
+	private static final Metrics.Histogram SWEEP_NANOS = Metrics.histogram("core.sweep.nanos");
+	private static final Metrics.Counter REVEALED = Metrics.counter("core.revealed");
+	private static final Metrics.Counter GAMES_WON = Metrics.counter("core.games.won");
+	private static final Metrics.Counter GAMES_LOST = Metrics.counter("core.games.lost");
+
 	// 行列偏移量常量 (位于↖,↑,↗,←,→,↙,↓,↘)
 	public static final int[] OFFSET_AROUND_ROW = { -1, -1, -1, 0, 0, 1, 1, 1 };
 	public static final int[] OFFSET_AROUND_COL = { -1, 0, 1, -1, 1, -1, 0, 1 };
@@ -38,10 +57,48 @@ public class Core {
 	public int remain; // 待翻开格子数
 	public int flags; // 标记数量
 	public int deadRow, deadCol; // 爆炸发生的格子索引
+	public long seed; // 生成地雷所用的随机种子 (相同种子与尺寸必定生成相同的棋盘)
+
+	// 棋盘 (格子的地雷、周围雷数与状态)
+	private Board board;
+
+	// 地雷所在的棋盘下标 (生成时记录, 按需扩容后复用)
+	private int[] mines = new int[0];
+	private int mineSize;
+	private boolean isGenerated;
+	private final int[] excluded = new int[9]; // 延迟生成时需避开的格子序号
 
-	// 格子
-	public char[][] grids;
-	public int[][] status;
+	// 并行计算周围雷数的格子数阈值 (设为 Integer.MAX_VALUE 即始终串行)
+	public int parallelThreshold = PARALLEL_THRESHOLD;
+
+	// 对局记录 (不为null时, 每次初始化重新开始记录, 并记录每一步操作)
+	public Recording recording;
+
+	/**
+	 * 连锁翻开的进度监听器 (在执行翻开的线程中调用)
+	 */
+	public interface RevealListener {
+
+		/**
+		 * 连锁翻开又翻开了一批格子
+		 *
+		 * @param changedSize
+		 *            目前改变了状态的格子数 ({@link #getChanged(int)} 的前 changedSize 个格子已经翻开, 本次操作中不会再改变)
+		 */
+		void revealed(int changedSize);
+
+	}
+
+	// 连锁翻开时每翻开这么多格子通知一次监听器
+	public static final int REVEAL_NOTIFY_CELLS = 4096;
+
+	// 连锁翻开的进度监听器 (为null时不通知)
+	public RevealListener revealListener;
+
+	// 翻开操作的工作队列 (存放棋盘下标, 预分配, 容量不足时翻倍扩容后复用)
+	// 操作结束后, 队列中即为本次操作改变了状态的格子
+	private int[] openQueue = new int[1024];
+	private int queueHead, queueTail;
 
 	/**
 	 * 使用默认参数初始化游戏 (简单)
@@ -71,7 +128,7 @@ public class Core {
 	}
 
 	/**
-	 * 使用指定参数初始化游戏
+	 * 使用指定参数初始化游戏 (随机种子)
 	 * 
 	 * @param rowSize
 	 *            格子行数 (高度)
@@ -81,39 +138,445 @@ public class Core {
 	 *            地雷的数量
 	 */
 	public void init(int rowSize, int colSize, int mineSize) {
+		init(rowSize, colSize, mineSize, ThreadLocalRandom.current().nextLong());
+	}
+
+	/**
+	 * 使用指定参数与随机种子初始化游戏
+	 * 
+	 * @param rowSize
+	 *            格子行数 (高度)
+	 * @param colSize
+	 *            格子列数 (宽度)
+	 * @param mineSize
+	 *            地雷的数量 (0 ~ rowSize * colSize)
+	 * @param seed
+	 *            随机种子
+	 */
+	public void init(int rowSize, int colSize, int mineSize, long seed) {
+		Events.Init event = new Events.Init();
+		event.begin();
+		long begin = Metrics.now();
+
+		reset(rowSize, colSize, mineSize, seed);
+		generate(-1, -1);
+
+		if (recording != null) {
+			recording.start(this);
+		}
+
+		INIT_NANOS.recordSince(begin);
+		if (event.shouldCommit()) {
+			commit(event, false);
+		}
+	}
+
+	/**
+	 * 使用指定参数初始化游戏 (延迟生成, 随机种子)
+	 * 
+	 * @param rowSize
+	 *            格子行数 (高度)
+	 * @param colSize
+	 *            格子列数 (宽度)
+	 * @param mineSize
+	 *            地雷的数量
+	 * @see #initLazy(int, int, int, long)
+	 */
+	public void initLazy(int rowSize, int colSize, int mineSize) {
+		initLazy(rowSize, colSize, mineSize, ThreadLocalRandom.current().nextLong());
+	}
+
+	/**
+	 * 使用指定参数与随机种子初始化游戏 (延迟生成)
+	 * <p>
+	 * 只记录尺寸, 地雷在第一次 {@link #open(int, int)} 时才生成,
+	 * 且避开被翻开的格子及其周围一圈, 保证第一次点击不会踩雷.
+	 * 
+	 * @param rowSize
+	 *            格子行数 (高度)
+	 * @param colSize
+	 *            格子列数 (宽度)
+	 * @param mineSize
+	 *            地雷的数量 (0 ~ rowSize * colSize)
+	 * @param seed
+	 *            随机种子
+	 */
+	public void initLazy(int rowSize, int colSize, int mineSize, long seed) {
+		Events.Init event = new Events.Init();
+		event.begin();
+		long begin = Metrics.now();
+
+		reset(rowSize, colSize, mineSize, seed);
+
+		if (recording != null) {
+			recording.start(this);
+		}
+
+		INIT_NANOS.recordSince(begin);
+		if (event.shouldCommit()) {
+			commit(event, true);
+		}
+	}
+
+	/**
+	 * 重置游戏状态与棋盘 (不生成地雷)
+	 */
+	private void reset(int rowSize, int colSize, int mineSize, long seed) {
+		if (mineSize < 0 || (long) rowSize * colSize < mineSize) {
+			throw new IllegalArgumentException("Illegal mine size: " + mineSize + " for " + rowSize + "x" + colSize);
+		}
+
 		isGameover = false;
 		isWin = false;
 		remain = rowSize * colSize - mineSize;
 		flags = 0;
+		this.seed = seed;
+		this.mineSize = mineSize;
+		isGenerated = false;
+		queueHead = queueTail = 0;
+
+		// 尺寸不变时复用棋盘
+		if (board != null && board.isSize(rowSize, colSize)) {
+			board.reset();
+		} else {
+			board = new Board(rowSize, colSize);
+		}
+	}
+
+	private void commit(Events.Init event, boolean isLazy) {
+		event.rows = board.rowSize;
+		event.cols = board.colSize;
+		event.mines = mineSize;
+		event.density = (float) mineSize / ((long) board.rowSize * board.colSize);
+		event.isLazy = isLazy;
+		event.commit();
+	}
+
+	/**
+	 * 判断地雷是否已经生成 (延迟生成模式下, 第一次翻开格子之前为false)
+	 */
+	public boolean isGenerated() {
+		return isGenerated;
+	}
+
+	/**
+	 * 生成地雷并计算周围雷数
+	 * 
+	 * @param safeRow
+	 *            需避开的格子行索引 (-1 表示不避开)
+	 * @param safeCol
+	 *            需避开的格子列索引
+	 */
+	private void generate(int safeRow, int safeCol) {
+		placeMines(new SplittableRandom(seed), safeRow, safeCol);
+		countAll();
+		isGenerated = true;
+	}
+
+	/**
+	 * 按棋盘上已设置的地雷位重建地雷列表并计算周围雷数 (载入存档时使用)
+	 * <p>
+	 * 调用前需先以相同的尺寸与雷数 {@link #initLazy(int, int, int, long)}，再在棋盘上设置地雷位。
+	 * 与生成时以地雷为中心累加不同，这里逐行扫描：先求每一列上中下三格的地雷数，
+	 * 再由左中右三列之和减去自身得到周围雷数。两个循环都没有分支，顺序访问内存，
+	 * 地雷密度高时也不会因分支预测失败而变慢。
+	 *
+	 * @throws IllegalArgumentException
+	 *             棋盘上的地雷数与雷数不一致
+	 */
+	void restoreMines() {
+		byte[] cells = board.cells;
+		int stride = board.stride;
+		int colSize = board.colSize;
+		if (mines.length <= mineSize) {
+			mines = new int[mineSize + 1]; // 多留一位, 无需判断即可写入
+		}
+
+		byte[] columns = new byte[stride]; // 每一列上中下三格的地雷数 (含左右哨兵)
+		int n = 0, total = 0;
+		for (int row = 0; row < board.rowSize; row++) {
+			int base = board.index(row, -1);
+			for (int j = 0; j < stride; j++) {
+				columns[j] = (byte) ((cells[base - stride + j] >> 4 & 1) + (cells[base + j] >> 4 & 1) + (cells[base + stride + j] >> 4 & 1));
+			}
+			for (int j = 1; j <= colSize; j++) {
+				cells[base + j] |= (byte) (columns[j - 1] + columns[j] + columns[j + 1] - (cells[base + j] >> 4 & 1));
+			}
+
+			// 收集地雷 (每格都写入, 只有地雷才前移)
+			for (int i = base + 1, end = i + colSize; i < end; i++) {
+				int mine = cells[i] >> 4 & 1;
+				mines[n] = i;
+				n = Math.min(n + mine, mineSize);
+				total += mine;
+			}
+		}
+		if (total != mineSize) {
+			throw new IllegalArgumentException("Mine size mismatch: " + total + " != " + mineSize);
+		}
+		isGenerated = true;
+	}
 
-		grids = new char[rowSize][colSize];
-		status = new int[rowSize][colSize];
+	/**
+	 * 计算周围雷数 (格子数达到阈值时并行)
+	 */
+	private void countAll() {
+		if ((long) board.rowSize * board.colSize >= parallelThreshold) {
+			ForkJoinPool.commonPool().invoke(new CountTask(board, 0, board.rowSize));
+		} else {
+			countMines();
+		}
+	}
+
+	/**
+	 * 随机生成地雷
+	 * <p>
+	 * 使用 Floyd 抽样算法从全部 n 个格子中不重复地抽取 mineSize 个：
+	 * 第 j 轮在 [0, j] 中随机取一个格子，若已是地雷则改取第 j 个格子 (此前的轮次不可能取到它)。
+	 * 棋盘上的地雷位即为已选集合，因此无论密度多高都恰好随机 mineSize 次，且无需额外内存。
+	 * <p>
+	 * 需要避开格子时，从剩余的 n - k 个格子中抽取，抽到的序号跳过被避开的 k 个格子 (k ≤ 9)，
+	 * 同样只需一轮抽取，不会出现重新生成的情况。
+	 * 
+	 * @param random
+	 *            随机数发生器
+	 * @param safeRow
+	 *            需避开的格子行索引 (-1 表示不避开)
+	 * @param safeCol
+	 *            需避开的格子列索引
+	 */
+	private void placeMines(SplittableRandom random, int safeRow, int safeCol) {
+		byte[] cells = board.cells;
+		int rowSize = board.rowSize;
+		int colSize = board.colSize;
+		int n = rowSize * colSize;
+
+		if (mines.length < mineSize) {
+			mines = new int[mineSize];
+		}
+
+		// 需避开的格子序号 (按行优先顺序, 天然升序)
+		int excludedSize = 0;
+		if (safeRow >= 0) {
+			for (int r = Math.max(safeRow - 1, 0); r <= Math.min(safeRow + 1, rowSize - 1); r++) {
+				for (int c = Math.max(safeCol - 1, 0); c <= Math.min(safeCol + 1, colSize - 1); c++) {
+					excluded[excludedSize++] = r * colSize + c;
+				}
+			}
+			// 地雷过多时只避开被翻开的格子本身, 仍放不下则不避开
+			if (mineSize > n - excludedSize) {
+				excluded[0] = safeRow * colSize + safeCol;
+				excludedSize = mineSize > n - 1 ? 0 : 1;
+			}
+		}
+		n -= excludedSize;
+
+		for (int i = 0, j = n - mineSize; j < n; i++, j++) {
+			int index = indexOfPick(random.nextInt(j + 1), excludedSize);
+			if (Board.isMine(cells[index])) {
+				index = indexOfPick(j, excludedSize);
+			}
+			cells[index] |= Board.BIT_MINE;
+			mines[i] = index;
+		}
+	}
+
+	/**
+	 * 将抽取到的序号 (不含被避开的格子) 转换为棋盘下标
+	 * 
+	 * @param pick
+	 *            抽取到的序号
+	 * @param excludedSize
+	 *            被避开的格子数量
+	 * @return 棋盘下标
+	 */
+	private int indexOfPick(int pick, int excludedSize) {
+		for (int k = 0; k < excludedSize && excluded[k] <= pick; k++) {
+			pick++;
+		}
+		return board.index(pick / board.colSize, pick % board.colSize);
+	}
+
+	/**
+	 * 计算所有格子的周围雷数 (串行)
+	 * <p>
+	 * 以地雷为中心，为每个地雷周边的 8 个格子加一，耗时只与地雷数量相关。
+	 * 哨兵格子同样会被累加，但其周围雷数从不被读取。
+	 */
+	private void countMines() {
+		byte[] cells = board.cells;
+		int[] offset = board.offsetAround;
 
-		// 随机生成地雷
-		int rCol;
-		int rRow;
 		for (int i = 0; i < mineSize; i++) {
-			do {
-				rRow = (int) (Math.random() * rowSize);
-				rCol = (int) (Math.random() * colSize);
-			} while (isMine(rRow, rCol));
-			grids[rRow][rCol] = MINE;
-		}
-
-		// 遍历所有格子
-		for (int row = 0; row < grids.length; row++) {
-			for (int col = 0; col < grids[row].length; col++) {
-				// 计算
-				if (!isMine(row, col)) {
-					grids[row][col] = (char) (countMinesAround(row, col) + '0');
+			int index = mines[i];
+			for (int j = 0; j < offset.length; j++) {
+				cells[index + offset[j]]++;
+			}
+		}
+	}
+
+	/**
+	 * 并行计算周围雷数的任务 (将棋盘按行切分为条带)
+	 * <p>
+	 * 每个条带扫描自身及上下各一行中的地雷，只为落在条带内的周边格子加一，
+	 * 各任务写入的格子互不重叠，因此无需同步，结果与串行计算完全一致。
+	 */
+	@SuppressWarnings("serial")
+	private static class CountTask extends RecursiveAction {
+
+		private final Board board;
+		private final int fromRow, toRow; // 负责的行范围 [fromRow, toRow)
+
+		CountTask(Board board, int fromRow, int toRow) {
+			this.board = board;
+			this.fromRow = fromRow;
+			this.toRow = toRow;
+		}
+
+		@Override
+		protected void compute() {
+			if (toRow - fromRow > STRIP_MIN_ROWS * 2 && (long) (toRow - fromRow) * board.colSize > PARALLEL_THRESHOLD / 16) {
+				int midRow = (fromRow + toRow) >>> 1;
+				invokeAll(new CountTask(board, fromRow, midRow), new CountTask(board, midRow, toRow));
+				return;
+			}
+
+			byte[] cells = board.cells;
+			int[] offset = board.offsetAround;
+			int stride = board.stride;
+
+			// 条带内格子的下标范围 (含左右哨兵)
+			int lower = board.index(fromRow, -1);
+			int upper = board.index(toRow, -1);
+
+			// 扫描条带及上下各一行 (哨兵行不含地雷)
+			for (int index = lower - stride; index < upper + stride; index++) {
+				if (Board.isMine(cells[index])) {
+					for (int j = 0; j < offset.length; j++) {
+						int around = index + offset[j];
+						if (around >= lower && around < upper) {
+							cells[around]++;
+						}
+					}
 				}
-				// 盖住
-				status[row][col] = STAT_COVER;
 			}
 		}
 
 	}
 
+	/**
+	 * 获取棋盘 (供同包内的求解器等直接读取)
+	 */
+	Board getBoard() {
+		return board;
+	}
+
+	/**
+	 * 获取上一次操作 (open / sweep / flag) 改变了状态的格子数量
+	 */
+	public int getChangedSize() {
+		return queueTail;
+	}
+
+	/**
+	 * 获取上一次操作改变了状态的第 i 个格子的行索引 (翻开操作按翻开顺序排列)
+	 * 
+	 * @param i
+	 *            序号 (0 ~ getChangedSize() - 1)
+	 * @return 行索引 (从0起算)
+	 */
+	public int getChangedRow(int i) {
+		return board.rowOf(openQueue[i]);
+	}
+
+	/**
+	 * 获取上一次操作改变了状态的第 i 个格子的列索引
+	 * 
+	 * @param i
+	 *            序号 (0 ~ getChangedSize() - 1)
+	 * @return 列索引 (从0起算)
+	 */
+	public int getChangedCol(int i) {
+		return board.colOf(openQueue[i]);
+	}
+
+	/**
+	 * 获取上一次操作改变了状态的第 i 个格子的棋盘下标
+	 */
+	int getChanged(int i) {
+		return openQueue[i];
+	}
+
+	/**
+	 * 获取第 i 个地雷的行索引 (地雷生成之后有效)
+	 * 
+	 * @param i
+	 *            序号 (0 ~ getMineSize() - 1)
+	 * @return 行索引 (从0起算)
+	 */
+	public int getMineRow(int i) {
+		return board.rowOf(mines[i]);
+	}
+
+	/**
+	 * 获取第 i 个地雷的列索引 (地雷生成之后有效)
+	 * 
+	 * @param i
+	 *            序号 (0 ~ getMineSize() - 1)
+	 * @return 列索引 (从0起算)
+	 */
+	public int getMineCol(int i) {
+		return board.colOf(mines[i]);
+	}
+
+	/**
+	 * 获取地雷的数量
+	 */
+	public int getMineSize() {
+		return mineSize;
+	}
+
+	/**
+	 * 获取格子行数 (高度)
+	 */
+	public int getRowSize() {
+		return board.rowSize;
+	}
+
+	/**
+	 * 获取格子列数 (宽度)
+	 */
+	public int getColSize() {
+		return board.colSize;
+	}
+
+	/**
+	 * 获取指定格子的内容
+	 * 
+	 * @param row
+	 *            行索引 (从0起算)
+	 * @param col
+	 *            列索引 (从0起算)
+	 * @return 地雷为 MINE, 否则为周围地雷数 ('0'~'8')
+	 */
+	public char getGrid(int row, int col) {
+		byte cell = board.cells[board.index(row, col)];
+		return Board.isMine(cell) ? MINE : (char) (Board.count(cell) + '0');
+	}
+
+	/**
+	 * 获取指定格子的状态
+	 * 
+	 * @param row
+	 *            行索引 (从0起算)
+	 * @param col
+	 *            列索引 (从0起算)
+	 * @return 格子状态 (STAT_*)
+	 */
+	public int getStatus(int row, int col) {
+		return Board.stat(board.cells[board.index(row, col)]);
+	}
+
 	/**
 	 * 判断指定行列是否越界
 	 * 
@@ -121,10 +584,10 @@ public class Core {
 	 *            行索引 (从0起算)
 	 * @param col
 	 *            列索引 (从0起算)
-	 * @return 若指定行列为地雷则返回true
+	 * @return 若指定行列越界则返回true
 	 */
 	public boolean isOutOfBound(int row, int col) {
-		return row < 0 || col < 0 || row >= grids.length || col >= grids[0].length;
+		return row < 0 || col < 0 || row >= board.rowSize || col >= board.colSize;
 	}
 
 	/**
@@ -137,10 +600,7 @@ public class Core {
 	 * @return 若指定行列为地雷则返回true
 	 */
 	public boolean isMine(int row, int col) {
-		if (grids[row][col] == MINE) {
-			return true;
-		}
-		return false;
+		return Board.isMine(board.cells[board.index(row, col)]);
 	}
 
 	/**
@@ -153,10 +613,7 @@ public class Core {
 	 * @return 若指定行列已标记则返回true
 	 */
 	public boolean isFlag(int row, int col) {
-		if (status[row][col] == STAT_FLAG) {
-			return true;
-		}
-		return false;
+		return Board.stat(board.cells[board.index(row, col)]) == STAT_FLAG;
 	}
 
 	/**
@@ -169,19 +626,8 @@ public class Core {
 	 * @return 指定行列周围一圈的地雷数量
 	 */
 	public int countMinesAround(int row, int col) {
-
-		int mineCount = 0;
-
-		// 遍历周边格子
-		for (int i = 0; i < OFFSET_AROUND_ROW.length; i++) {
-			int r = row + OFFSET_AROUND_ROW[i];
-			int c = col + OFFSET_AROUND_COL[i];
-
-			if (!isOutOfBound(r, c) && isMine(r, c)) {
-				mineCount++;
-			}
-		}
-		return mineCount;
+		// 生成时已计算 (生成之前为0)
+		return Board.count(board.cells[board.index(row, col)]);
 	}
 
 	/**
@@ -194,19 +640,50 @@ public class Core {
 	 * @return 指定行列周围一圈的标记数量
 	 */
 	public int countFlagsAround(int row, int col) {
+		return Board.flags(board.around[board.index(row, col)]);
+	}
 
-		int flagCount = 0;
+	/**
+	 * 计算指定行列周围一圈盖住且未标记 (未知) 的格子数量
+	 * 
+	 * @param row
+	 *            行索引 (从0起算)
+	 * @param col
+	 *            列索引 (从0起算)
+	 * @return 指定行列周围一圈未知的格子数量
+	 */
+	public int countCoveredAround(int row, int col) {
+		return Board.covered(board.around[board.index(row, col)]);
+	}
 
-		// 遍历周边格子
-		for (int i = 0; i < OFFSET_AROUND_ROW.length; i++) {
-			int r = row + OFFSET_AROUND_ROW[i];
-			int c = col + OFFSET_AROUND_COL[i];
+	/**
+	 * 判断指定格子是否为已满足的数字 (已翻开且周边标记数等于周边雷数, 即可以快速排雷)
+	 * 
+	 * @param row
+	 *            行索引 (从0起算)
+	 * @param col
+	 *            列索引 (从0起算)
+	 */
+	public boolean isSatisfied(int row, int col) {
+		int index = board.index(row, col);
+		byte cell = board.cells[index];
+		return Board.stat(cell) == STAT_OPEN && Board.flags(board.around[index]) == Board.count(cell);
+	}
 
-			if (!isOutOfBound(r, c) && isFlag(r, c)) {
-				flagCount++;
-			}
+	/**
+	 * 格子状态改变后更新周边格子的计数
+	 * 
+	 * @param index
+	 *            棋盘下标
+	 * @param delta
+	 *            周边计数的增量
+	 */
+	private void addAround(int index, int delta) {
+		byte[] around = board.around;
+		int[] offset = board.offsetAround;
+		for (int i = 0; i < offset.length; i++) {
+			around[index + offset[i]] += delta;
 		}
-		return flagCount;
 	}
 
 	/**
@@ -218,19 +695,33 @@ public class Core {
 	 *            列索引 (从0起算)
 	 */
 	public void flag(int row, int col) {
-		if (status[row][col] != STAT_OPEN) {
-			if (status[row][col] == STAT_COVER) {
-				status[row][col] = STAT_FLAG;
-				flags++;
-			} else {
-				status[row][col] = STAT_COVER;
-				flags--;
-			}
+		byte[] cells = board.cells;
+		int index = board.index(row, col);
+
+		if (recording != null) {
+			recording.add(Recording.OP_FLAG, row, col);
+		}
+
+		queueHead = queueTail = 0;
+		switch (Board.stat(cells[index])) {
+		case STAT_COVER:
+			cells[index] = Board.withStat(cells[index], STAT_FLAG);
+			addAround(index, Board.DELTA_COVER_TO_FLAG);
+			flags++;
+			break;
+		case STAT_FLAG:
+			cells[index] = Board.withStat(cells[index], STAT_COVER);
+			addAround(index, -Board.DELTA_COVER_TO_FLAG);
+			flags--;
+			break;
+		default:
+			return;
 		}
+		openQueue[queueTail++] = index;
 	}
 
 	/**
-	 * 翻开指定格子
+	 * 翻开指定格子 (未翻开且未标记的格子才会被翻开, 延迟生成模式下首次调用时生成地雷)
 	 * 
 	 * @param row
 	 *            行索引 (从0起算)
@@ -238,34 +729,36 @@ public class Core {
 	 *            列索引 (从0起算)
 	 */
 	public void open(int row, int col) {
-		status[row][col] = STAT_OPEN;
-		remain--;
-
-		// 如果翻到周围无雷的格子，则继续翻开周围一圈
-		if (grids[row][col] == '0') {
-
-			// 遍历周边格子
-			for (int i = 0; i < OFFSET_AROUND_ROW.length; i++) {
-				int r = row + OFFSET_AROUND_ROW[i];
-				int c = col + OFFSET_AROUND_COL[i];
-
-				// 翻开未越界且未翻开的
-				if (!isOutOfBound(r, c) && status[r][c] == STAT_COVER) {
-					open(r, c);
-				}
-			}
+		Events.Open event = new Events.Open();
+		event.begin();
+		long begin = Metrics.now();
+		boolean isOver = isGameover || isWin;
+		boolean isGenerating = !isGenerated;
+
+		if (recording != null) {
+			recording.add(Recording.OP_OPEN, row, col);
 		}
 
-		// 踩雷判定
-		if (isMine(row, col)) {
-			deadRow = row;
-			deadCol = col;
-			isGameover = true;
+		// 延迟生成模式下, 第一次翻开时才生成地雷
+		if (isGenerating) {
+			generate(row, col);
 		}
 
-		// 胜利判定
-		if (remain == 0) {
-			isWin = true;
+		queueHead = queueTail = 0;
+		enqueue(board.index(row, col));
+		reveal();
+
+		OPEN_NANOS.recordSince(begin);
+		REVEALED.add(queueTail);
+		if (event.shouldCommit()) {
+			event.row = row;
+			event.col = col;
+			event.revealed = queueTail;
+			event.isGenerated = isGenerating;
+			event.commit();
+		}
+		if (!isOver && (isGameover || isWin)) {
+			end();
 		}
 	}
 
@@ -278,20 +771,119 @@ public class Core {
 	 *            列索引 (从0起算)
 	 */
 	public void sweep(int row, int col) {
+		Events.Sweep event = new Events.Sweep();
+		event.begin();
+		long begin = Metrics.now();
+		boolean isOver = isGameover || isWin;
+		int[] offset = board.offsetAround;
+		int index = board.index(row, col);
+
+		if (recording != null) {
+			recording.add(Recording.OP_SWEEP, row, col);
+		}
+
+		queueHead = queueTail = 0;
 
-		// 若周边雷数与周边标记数一致
-		if (countFlagsAround(row, col) == countMinesAround(row, col)) {
+		// 已翻开且周边雷数与周边标记数一致
+		byte cell = board.cells[index];
+		if (Board.stat(cell) == STAT_OPEN && Board.flags(board.around[index]) == Board.count(cell)) {
 
-			// 遍历周边格子
-			for (int i = 0; i < OFFSET_AROUND_ROW.length; i++) {
-				int r = row + OFFSET_AROUND_ROW[i];
-				int c = col + OFFSET_AROUND_COL[i];
+			// 遍历周边格子 (哨兵格子不会入队)
+			for (int i = 0; i < offset.length; i++) {
+				enqueue(index + offset[i]);
+			}
+		}
+		reveal();
+
+		SWEEP_NANOS.recordSince(begin);
+		REVEALED.add(queueTail);
+		if (event.shouldCommit()) {
+			event.row = row;
+			event.col = col;
+			event.revealed = queueTail;
+			event.commit();
+		}
+		if (!isOver && (isGameover || isWin)) {
+			end();
+		}
+	}
 
-				// 翻开未越界且未翻开的
-				if (!isOutOfBound(r, c) && status[r][c] == STAT_COVER) {
-					open(r, c);
+	/**
+	 * 一局结束 (由胜负未分变为胜利或踩雷时调用)
+	 */
+	private void end() {
+		(isWin ? GAMES_WON : GAMES_LOST).increment();
+		Events.GameEnd event = new Events.GameEnd();
+		if (event.shouldCommit()) {
+			event.isWin = isWin;
+			event.rows = board.rowSize;
+			event.cols = board.colSize;
+			event.mines = mineSize;
+			event.remain = remain;
+			event.commit();
+		}
+	}
+
+	/**
+	 * 将未翻开且未标记的格子翻开并加入工作队列 (每个格子至多入队一次)
+	 * 
+	 * @param index
+	 *            棋盘下标
+	 */
+	private void enqueue(int index) {
+		byte[] cells = board.cells;
+		byte cell = cells[index];
+		if ((cell & Board.MASK_STAT) != Board.CELL_COVER) {
+			return;
+		}
+		cells[index] = Board.withStat(cell, STAT_OPEN);
+		addAround(index, -1);
+
+		// 踩雷判定 (只有直接翻开的格子可能是地雷, 连锁翻开的格子周围必然无雷)
+		if (Board.isMine(cell)) {
+			deadRow = board.rowOf(index);
+			deadCol = board.colOf(index);
+			isGameover = true;
+		} else {
+			remain--;
+		}
+
+		if (queueTail == openQueue.length) {
+			openQueue = Arrays.copyOf(openQueue, openQueue.length * 2);
+		}
+		openQueue[queueTail++] = index;
+	}
+
+	/**
+	 * 处理工作队列: 翻到周围无雷的格子则继续翻开周围一圈, 直至队列为空
+	 */
+	private void reveal() {
+		byte[] cells = board.cells;
+		int[] offset = board.offsetAround;
+		int notified = 0;
+
+		while (queueHead < queueTail) {
+			int index = openQueue[queueHead++];
+			byte cell = cells[index];
+
+			// 周围无雷 (同时也不是地雷)
+			if ((cell & (Board.MASK_COUNT | Board.BIT_MINE)) == 0) {
+
+				// 遍历周边格子 (哨兵格子不会入队)
+				for (int i = 0; i < offset.length; i++) {
+					enqueue(index + offset[i]);
 				}
 			}
+
+			if (revealListener != null && queueTail - notified >= REVEAL_NOTIFY_CELLS) {
+				notified = queueTail;
+				revealListener.revealed(queueTail);
+			}
+		}
+
+		// 胜利判定
+		if (remain == 0 && !isGameover) {
+			isWin = true;
 		}
 	}
 
@@ -300,11 +892,11 @@ public class Core {
 	 */
 	@Deprecated
 	public void showMines() {
-		for (int row = 0; row < grids.length; row++) {
-			for (int col = 0; col < grids[row].length; col++) {
-				if (isMine(row, col)) {
-					status[row][col] = STAT_OPEN;
-				}
+		byte[] cells = board.cells;
+		for (int i = 0; i < cells.length; i++) {
+			if (Board.isMine(cells[i]) && Board.stat(cells[i]) != STAT_OPEN) {
+				addAround(i, Board.stat(cells[i]) == STAT_FLAG ? -(1 << Board.SHIFT_FLAGS) : -1);
+				cells[i] = Board.withStat(cells[i], STAT_OPEN);
 			}
 		}
 	}
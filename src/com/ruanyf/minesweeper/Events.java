@@ -0,0 +1,126 @@
+package com.ruanyf.minesweeper;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder 事件
+ * <p>
+ * 在操作开始时创建事件并 {@code begin()}，结束时仅当 {@code shouldCommit()} 才填写字段并提交。
+ * 没有录制 (或录制未启用这些事件) 时，事件对象会被 JIT 的逃逸分析消除，几乎没有开销。
+ * 以 {@code -XX:StartFlightRecording} 启动或用 {@code jcmd PID JFR.start} 开始录制，
+ * 在 JDK Mission Control 中按 "Minesweeper" 分类查看。
+ *
+ * @author Yaofeng Ruan
+ */
+public final class Events {
+
+	private Events() {
+	}
+
+	/**
+	 * 初始化游戏 (非延迟模式包括生成地雷)
+	 */
+	@Name("com.ruanyf.minesweeper.Init")
+	@Label("Init")
+	@Category("Minesweeper")
+	@StackTrace(false)
+	static class Init extends Event {
+
+		@Label("Rows")
+		int rows;
+
+		@Label("Columns")
+		int cols;
+
+		@Label("Mines")
+		int mines;
+
+		@Label("Density")
+		@Description("Mines per cell")
+		float density;
+
+		@Label("Lazy")
+		@Description("Mines are generated on the first open")
+		boolean isLazy;
+
+	}
+
+	/**
+	 * 翻开 (延迟生成模式下第一次翻开包括生成地雷)
+	 */
+	@Name("com.ruanyf.minesweeper.Open")
+	@Label("Open")
+	@Category("Minesweeper")
+	@StackTrace(false)
+	static class Open extends Event {
+
+		@Label("Row")
+		int row;
+
+		@Label("Column")
+		int col;
+
+		@Label("Revealed")
+		@Description("Cells revealed by this operation")
+		int revealed;
+
+		@Label("Generated")
+		@Description("Mines were generated by this operation")
+		boolean isGenerated;
+
+	}
+
+	/**
+	 * 快速排雷
+	 */
+	@Name("com.ruanyf.minesweeper.Sweep")
+	@Label("Sweep")
+	@Category("Minesweeper")
+	@StackTrace(false)
+	static class Sweep extends Event {
+
+		@Label("Row")
+		int row;
+
+		@Label("Column")
+		int col;
+
+		@Label("Revealed")
+		@Description("Cells revealed by this operation")
+		int revealed;
+
+	}
+
+	/**
+	 * 一局结束 (胜利或踩雷)
+	 */
+	@Name("com.ruanyf.minesweeper.GameEnd")
+	@Label("Game End")
+	@Category("Minesweeper")
+	@StackTrace(false)
+	static class GameEnd extends Event {
+
+		@Label("Win")
+		boolean isWin;
+
+		@Label("Rows")
+		int rows;
+
+		@Label("Columns")
+		int cols;
+
+		@Label("Mines")
+		int mines;
+
+		@Label("Remain")
+		@Description("Cells left to open")
+		int remain;
+
+	}
+
+}
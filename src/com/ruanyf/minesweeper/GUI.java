@@ -1,27 +1,49 @@
 package com.ruanyf.minesweeper;
 
+import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.EventQueue;
 import java.awt.Font;
-import java.awt.Image;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
 import java.awt.Insets;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.awt.event.MouseAdapter;
-import java.awt.event.MouseEvent;
-
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.AbstractAction;
 import javax.swing.BorderFactory;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
-import javax.swing.ImageIcon;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JComponent;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.KeyStroke;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import javax.swing.filechooser.FileNameExtensionFilter;
 
 /**
  * 扫雷GUI
@@ -46,6 +68,21 @@ public class GUI extends JFrame {
 	public static final Color CT_PURPLE = new Color(224, 192, 255);
 	public static final Color CT_PURPLE_FOCUS = new Color(192, 128, 255);
 
+	// 预置难度的主题色 (按 Core.DIFFICULTY_* 索引)
+	private static final Color[] PRESET_THEMES = { CT_PURPLE, CT_BLUE, CT_RED };
+	private static final Color[] PRESET_THEMES_FOCUS = { CT_PURPLE_FOCUS, CT_BLUE_FOCUS, CT_RED_FOCUS };
+
+	// 格子尺寸 (像素)
+	private static final int TILE_SIZE = 32;
+
+	// 格子数达到此值的棋盘在工作线程中翻开, 并按批次逐步显示
+	public static final int ASYNC_THRESHOLD = 1 << 16;
+	// 逐步显示时交给 EDT 的最短间隔 (约一帧)
+	private static final long REVEAL_FRAME_NANOS = 16000000L;
+
+	// 点击难度到显示棋盘的耗时 (见 Metrics)
+	private static final Metrics.Histogram START_NANOS = Metrics.histogram("gui.start.nanos");
+
 	// 图标资源路径
 	public static final String PATH_IMG_MINE = "res/img/bomb.png";
 	public static final String PATH_IMG_FLAG = "res/img/flag.png";
@@ -56,20 +93,29 @@ public class GUI extends JFrame {
 	private Color themeColor;
 	private Color themeFocusColor;
 
-	// 图标
-	public ImageIcon icMine, icFlag, icFlagCorrect, icFlagWrong;
-
 	private JPanel titlePane;
 	private JPanel gamePane;
 	private JPanel menuPane;
 	private JLabel lblTitle;
+	private JCheckBox chkNoGuess;
 
-	private JLabel[][] tiles; // 数字格子
-	private JButton[][] covers; // 砖块
+	private BoardView boardView; // 棋盘
 
 	// 游戏核心
 	private Core core = new Core();
 
+	// 对局记录 (每局结束时保存)
+	private Recording recording = new Recording();
+	private Timer replayTimer; // 正在回放时不为null
+
+	// 无需猜测模式 (勾选后才启动生成器)
+	private boolean isNoGuess;
+	private NoGuessGenerator generator;
+
+	// 显示标题界面或结果对话框期间, 在后台为每个预置难度准备下一局的核心与格子图集
+	private ExecutorService preparer;
+	private final List<Future<Core>> prepared = new ArrayList<>(Collections.<Future<Core>>nCopies(NoGuessGenerator.PRESETS.length, null));
+
 	/**
 	 * Create the frame.
 	 */
@@ -80,28 +126,13 @@ public class GUI extends JFrame {
 		setSize(640, 480);
 		setLocationRelativeTo(null); // 窗口居中
 
+		// 记录每一局
+		core.recording = recording;
+
 		// 显示标题界面
 		showTitle();
 	}
 
-	/**
-	 * 重新计算图标大小 (初始化时调用 / 自适应窗口改变砖块大小时调用)
-	 */
-	private void initImage(int width, int height) {
-		icMine = new ImageIcon();
-		icFlag = new ImageIcon();
-		icFlagCorrect = new ImageIcon();
-		icFlagWrong = new ImageIcon();
-
-		ImageIcon[] icons = { icMine, icFlag, icFlagCorrect, icFlagWrong };
-		String[] pathes = { PATH_IMG_MINE, PATH_IMG_FLAG, PATH_IMG_FLAG_CORRECT, PATH_IMG_FLAG_WRONG };
-
-		for (int i = 0; i < icons.length; i++) {
-			ImageIcon ic = new ImageIcon(pathes[i]);
-			icons[i].setImage(ic.getImage().getScaledInstance(width, height, Image.SCALE_SMOOTH));
-		}
-	}
-
 	/**
 	 * 显示标题界面
 	 */
@@ -118,7 +149,7 @@ public class GUI extends JFrame {
 		lblTitle = new JLabel(TITLE, JLabel.CENTER);
 		lblTitle.setAlignmentX(Component.CENTER_ALIGNMENT);
 		lblTitle.setPreferredSize(new Dimension(0, 128));
-		lblTitle.setFont(new Font(null, Font.ITALIC, 48));
+		lblTitle.setFont(ResourceCache.getFont(Font.ITALIC, 48));
 
 		// 按钮的容器
 		menuPane = new JPanel();
@@ -126,9 +157,9 @@ public class GUI extends JFrame {
 		menuPane.setLayout(new BoxLayout(menuPane, BoxLayout.X_AXIS));
 
 		// 开始按钮的属性定义
-		Font btnFont = new Font(null, Font.PLAIN, 24);
-		String[] btnTexts = new String[] { "Easy", "Normal", "Hard" };
-		Color[] btnColors = new Color[] { new Color(0, 192, 0), new Color(0, 160, 255), new Color(255, 64, 0) };
+		Font btnFont = ResourceCache.getFont(Font.PLAIN, 24);
+		String[] btnTexts = new String[] { "Easy", "Normal", "Hard", "Custom" };
+		Color[] btnColors = new Color[] { new Color(0, 192, 0), new Color(0, 160, 255), new Color(255, 64, 0), new Color(128, 128, 128) };
 		JButton[] btns = new JButton[btnTexts.length];
 
 		// 开始按钮的事件
@@ -137,19 +168,15 @@ public class GUI extends JFrame {
 			public void actionPerformed(ActionEvent e) {
 				String cmd = e.getActionCommand();
 				if (btnTexts[0].equals(cmd)) {
-//					themeColor = CT_GREEN;
-//					themeFocusColor = CT_GREEN_FOCUS;
-					themeColor = CT_PURPLE;
-					themeFocusColor = CT_PURPLE_FOCUS;
-					startGame(Core.SIZE_EASY_ROW, Core.SIZE_EASY_COL, Core.SIZE_EASY_MINE);
+					startGame(Core.DIFFICULTY_EASY);
 				} else if (btnTexts[1].equals(cmd)) {
-					themeColor = CT_BLUE;
-					themeFocusColor = CT_BLUE_FOCUS;
-					startGame(Core.SIZE_NORMAL_ROW, Core.SIZE_NORMAL_COL, Core.SIZE_NORMAL_MINE);
+					startGame(Core.DIFFICULTY_NORMAL);
 				} else if (btnTexts[2].equals(cmd)) {
-					themeColor = CT_RED;
-					themeFocusColor = CT_RED_FOCUS;
-					startGame(Core.SIZE_HARD_ROW, Core.SIZE_HARD_COL, Core.SIZE_HARD_MINE);
+					startGame(Core.DIFFICULTY_HARD);
+				} else if (btnTexts[3].equals(cmd)) {
+					themeColor = CT_GREEN;
+					themeFocusColor = CT_GREEN_FOCUS;
+					startCustomGame();
 				}
 			}
 		};
@@ -181,14 +208,188 @@ public class GUI extends JFrame {
 		// 移除最后一个多余的占位元素 (Strut)
 		menuPane.remove(menuPane.getComponentCount() - 1);
 
+		// 无需猜测模式选项
+		chkNoGuess = new JCheckBox("No guess", isNoGuess);
+		chkNoGuess.setOpaque(false);
+		chkNoGuess.setAlignmentX(Component.CENTER_ALIGNMENT);
+		chkNoGuess.setFont(ResourceCache.getFont(Font.PLAIN, 16));
+		chkNoGuess.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				isNoGuess = chkNoGuess.isSelected();
+				// 第一次勾选时启动生成器, 在后台准备棋盘
+				if (isNoGuess && generator == null) {
+					generator = new NoGuessGenerator();
+				}
+			}
+		});
+
+		// 回放对局记录
+		JButton btnReplay = new JButton("Replay ...");
+		btnReplay.setAlignmentX(Component.CENTER_ALIGNMENT);
+		btnReplay.setFont(ResourceCache.getFont(Font.PLAIN, 16));
+		btnReplay.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				JFileChooser chooser = new JFileChooser(Recording.PATH_DEFAULT_DIR);
+				chooser.setFileFilter(new FileNameExtensionFilter("Recordings", Recording.EXTENSION.substring(1)));
+				if (chooser.showOpenDialog(GUI.this) == JFileChooser.APPROVE_OPTION) {
+					String speed = JOptionPane.showInputDialog(GUI.this, "Moves per second", "10");
+					if (speed != null) {
+						try {
+							replay(chooser.getSelectedFile(), Integer.parseInt(speed.trim()));
+						} catch (IOException | IllegalArgumentException ex) {
+							JOptionPane.showMessageDialog(GUI.this, "  " + ex.getMessage(), TITLE, JOptionPane.ERROR_MESSAGE);
+						}
+					}
+				}
+			}
+		});
+
+		// 继续存档的对局
+		JButton btnResume = new JButton("Resume ...");
+		btnResume.setAlignmentX(Component.CENTER_ALIGNMENT);
+		btnResume.setFont(ResourceCache.getFont(Font.PLAIN, 16));
+		btnResume.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				JFileChooser chooser = new JFileChooser(Snapshot.PATH_DEFAULT_DIR);
+				chooser.setFileFilter(new FileNameExtensionFilter("Saved games", Snapshot.EXTENSION.substring(1)));
+				if (chooser.showOpenDialog(GUI.this) == JFileChooser.APPROVE_OPTION) {
+					try {
+						resumeGame(chooser.getSelectedFile());
+					} catch (IOException ex) {
+						JOptionPane.showMessageDialog(GUI.this, "  " + ex.getMessage(), TITLE, JOptionPane.ERROR_MESSAGE);
+						showTitle();
+					}
+				}
+			}
+		});
+
 		// 添加组件到TitlePane
 		titlePane.add(Box.createVerticalGlue()); // 自适应占位元素
 		titlePane.add(lblTitle);
 		titlePane.add(menuPane);
+		titlePane.add(Box.createVerticalStrut(16));
+		titlePane.add(chkNoGuess);
+		titlePane.add(Box.createVerticalStrut(8));
+		titlePane.add(btnReplay);
+		titlePane.add(Box.createVerticalStrut(8));
+		titlePane.add(btnResume);
 		titlePane.add(Box.createVerticalGlue());
 
 		setContentPane(titlePane);
 		revalidate(); // 刷新UI
+
+		prepare();
+	}
+
+	/**
+	 * 在后台为每个预置难度准备下一局: 初始化好的核心 (延迟生成) 与当前尺寸、主题色的格子图集
+	 * <p>
+	 * 已在准备 (或已准备好) 的难度跳过。图集存放在共享的 {@link ResourceCache} 中, 之后显示棋盘时直接取用。
+	 */
+	private void prepare() {
+		if (preparer == null) {
+			preparer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "gui-preparer");
+					t.setDaemon(true);
+					t.setPriority(Thread.MIN_PRIORITY);
+					return t;
+				}
+			});
+		}
+
+		// 显示器的缩放比例与界面底色只能在 EDT 上获取
+		GraphicsConfiguration gc = getGraphicsConfiguration();
+		final double scale = gc == null ? 1 : gc.getDefaultTransform().getScaleX();
+		final Color background = ResourceCache.getPanelBackground();
+
+		for (int i = 0; i < prepared.size(); i++) {
+			if (prepared.get(i) != null) {
+				continue;
+			}
+			final int difficulty = i;
+			prepared.set(i, preparer.submit(new Callable<Core>() {
+				@Override
+				public Core call() {
+					int[] preset = NoGuessGenerator.PRESETS[difficulty];
+					Core next = new Core();
+					next.initLazy(preset[0], preset[1], preset[2]);
+					ResourceCache.getAtlas(TILE_SIZE, scale, background, PRESET_THEMES[difficulty], PRESET_THEMES_FOCUS[difficulty]);
+					return next;
+				}
+			}));
+		}
+	}
+
+	/**
+	 * 取出后台准备好的核心 (尚未准备好时不等待)
+	 *
+	 * @return 核心, 尚未准备好时返回null
+	 */
+	private Core takePrepared(int difficulty) {
+		Future<Core> future = prepared.get(difficulty);
+		if (future == null || !future.isDone()) {
+			return null;
+		}
+		prepared.set(difficulty, null);
+		try {
+			return future.get();
+		} catch (InterruptedException | ExecutionException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * 使用默认难度配置初始化游戏 (无需猜测模式下从生成器取出棋盘并翻开第一个格子)
+	 * 
+	 * @param difficulty
+	 *            难度 (Core.DIFFICULTY_*)
+	 */
+	private void startGame(int difficulty) {
+		long begin = Metrics.now();
+		themeColor = PRESET_THEMES[difficulty];
+		themeFocusColor = PRESET_THEMES_FOCUS[difficulty];
+
+		// 优先使用后台准备好的核心 (图集也已绘制好)
+		Core next = takePrepared(difficulty);
+		if (next != null) {
+			core = next;
+			core.recording = recording;
+			recording.start(core);
+			showGame();
+		} else {
+			int[] preset = NoGuessGenerator.PRESETS[difficulty];
+			startGame(preset[0], preset[1], preset[2]);
+		}
+
+		if (isNoGuess) {
+			generator.take(difficulty).apply(core);
+
+			setTitle(TITLE + " ( Remain: " + core.remain + " , Flag: " + core.flags + " )");
+			refreshStatus();
+		}
+		START_NANOS.recordSince(begin);
+	}
+
+	/**
+	 * 输入尺寸与雷数后初始化游戏 (例如 "1000 1000 150000")
+	 */
+	private void startCustomGame() {
+		String input = JOptionPane.showInputDialog(this, "rows cols mines", "30 50 300");
+		if (input == null) {
+			return; // 取消
+		}
+		try {
+			String[] args = input.trim().split("\\s+");
+			startGame(Integer.parseInt(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+			setTitle(TITLE + " ( Remain: " + core.remain + " , Flag: " + core.flags + " )");
+		} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+			JOptionPane.showMessageDialog(this, "  Invalid size: " + input, TITLE, JOptionPane.ERROR_MESSAGE);
+		}
 	}
 
 	/**
@@ -202,143 +403,101 @@ public class GUI extends JFrame {
 	 *            地雷的数量
 	 */
 	private void startGame(int rowSize, int colSize, int mineSize) {
-		// UI尺寸
-		int tileSize = 32;
-		int paddingHorizontal = 64;
-		int paddingVertical = 64;
-
-		// 调整尺寸
-		Insets ins = getInsets(); // 获取窗口边框尺寸
-		setSize(paddingHorizontal * 2 + tileSize * colSize + ins.left + ins.right, paddingVertical * 2 + tileSize * rowSize + ins.top + ins.bottom);
-		setLocationRelativeTo(null); // 窗口居中
+		core.recording = recording;
 
-		// 初始化图标
-		initImage(tileSize, tileSize);
+		// 初始化核心 (延迟生成, 第一次翻开时才生成地雷)
+		core.initLazy(rowSize, colSize, mineSize);
 
-		// 初始化核心
-		core.init(rowSize, colSize, mineSize);
+		showGame();
+	}
 
-		// 扫雷按钮事件
-		MouseAdapter sweepActionListener = new MouseAdapter() {
+	/**
+	 * 从存档继续游戏 (继续的对局不记录)
+	 * 
+	 * @param file
+	 *            存档文件
+	 */
+	private void resumeGame(File file) throws IOException {
+		themeColor = CT_GREEN;
+		themeFocusColor = CT_GREEN_FOCUS;
+		Snapshot.load(core, file);
 
-			static final int BTN_L = MouseEvent.BUTTON1_DOWN_MASK;
-			static final int BTN_M = MouseEvent.BUTTON2_DOWN_MASK;
-			static final int BTN_R = MouseEvent.BUTTON3_DOWN_MASK;
-			static final int BTN_L_R = MouseEvent.BUTTON1_DOWN_MASK + MouseEvent.BUTTON3_DOWN_MASK;
+		showGame();
+		setTitle(TITLE + " ( Remain: " + core.remain + " , Flag: " + core.flags + " )");
+	}
 
-			static final int STAT_NORMAL = 0;
-			static final int STAT_FOCUS = 1;
-			static final int STAT_DOWM = 2;
+	/**
+	 * 保存当前对局 (游戏中按 Ctrl+S)
+	 */
+	private void saveGame() {
+		if (replayTimer != null || boardView.isBusy() || core.isGameover || core.isWin) {
+			return;
+		}
+		new File(Snapshot.PATH_DEFAULT_DIR).mkdirs();
+		JFileChooser chooser = new JFileChooser(Snapshot.PATH_DEFAULT_DIR);
+		chooser.setFileFilter(new FileNameExtensionFilter("Saved games", Snapshot.EXTENSION.substring(1)));
+		chooser.setSelectedFile(new File(Snapshot.PATH_DEFAULT_DIR, System.currentTimeMillis() + Snapshot.EXTENSION));
+		if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+			try {
+				Snapshot.save(core, chooser.getSelectedFile());
+			} catch (IOException e) {
+				JOptionPane.showMessageDialog(this, "  " + e.getMessage(), TITLE, JOptionPane.ERROR_MESSAGE);
+			}
+		}
+	}
 
-			int mask; // 记录当前按键
+	/**
+	 * 按核心当前的状态显示游戏界面
+	 */
+	private void showGame() {
+		int rowSize = core.getRowSize();
+		int colSize = core.getColSize();
 
-			/*
-			 * 由于mouseReleased(鼠标抬起事件)中获取到的事件源为mousePressed(鼠标按下事件)被触发时的事件源，
-			 * 如：按下“按钮A”，将鼠标移动到“按钮B”，松开按键，此时触发的依然是“按钮A”的事件
-			 * 而扫雷的需求是：要翻开的格子，以松开鼠标时鼠标所在的格子为准 所以在此定义一个变量用于存储鼠标最后一次进入的控件
-			 */
-			Object focusComponent; // 看上面↑
+		// UI尺寸
+		int tileSize = TILE_SIZE;
+		int paddingHorizontal = 64;
+		int paddingVertical = 64;
 
+		// 棋盘控件 (整个棋盘只有一个控件, 超出窗口的部分可以滚动查看)
+		boardView = new BoardView(core, tileSize, themeColor, themeFocusColor);
+		boardView.setCellListener(new BoardView.CellListener() {
 			@Override
-			public void mouseEntered(MouseEvent e) {
-				focusComponent = e.getSource(); // 鼠标进入控件时标记为当前控件
-
-				if (focusComponent instanceof JButton) {
-					if (mask == BTN_L || mask == BTN_M || mask == BTN_L_R) {
-						// 鼠标按键进行“翻开”相关操作的情形
-						setGridStyle((JButton) focusComponent, STAT_DOWM);
-					} else {
-						setGridStyle((JButton) focusComponent, STAT_FOCUS);
-					}
-				}
+			public void open(int row, int col) {
+				GUI.this.open(row, col); // 左键翻开
 			}
 
 			@Override
-			public void mouseExited(MouseEvent e) {
-				focusComponent = null; // 鼠标离开控件时清除当前控件
-										// (否则在场景外松开鼠标依然会触发位于边缘的格子的事件)
-				Object eSrc = e.getSource();
-				if (eSrc instanceof JButton) {
-					setGridStyle((JButton) eSrc, STAT_NORMAL);
-				}
+			public void flag(int row, int col) {
+				GUI.this.flag(row, col); // 右键标记
 			}
 
 			@Override
-			public void mousePressed(MouseEvent e) {
-				mask = e.getModifiersEx(); // 按下鼠标时记录鼠标按键
-
-				if (focusComponent instanceof JButton) {
-					if (mask == BTN_L || mask == BTN_M || mask == BTN_L_R) {
-						// 鼠标按键进行“翻开”相关操作的情形
-						setGridStyle((JButton) focusComponent, STAT_DOWM);
-					}
-				}
+			public void sweep(int row, int col) {
+				GUI.this.sweep(row, col); // 左键+右键快速排雷(或中键)
 			}
+		});
 
+		// 创建容器 (Panel)
+		JScrollPane scrollPane = new JScrollPane(boardView);
+		scrollPane.setBorder(BorderFactory.createEmptyBorder(paddingVertical, paddingHorizontal, paddingVertical, paddingHorizontal));
+		gamePane = new JPanel(new BorderLayout());
+		gamePane.add(scrollPane, BorderLayout.CENTER);
+
+		// Ctrl+S 保存对局
+		gamePane.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(KeyEvent.VK_S, InputEvent.CTRL_DOWN_MASK), "save");
+		gamePane.getActionMap().put("save", new AbstractAction() {
 			@Override
-			public void mouseReleased(MouseEvent e) {
-				// 遍历所有按钮
-				boolean flag = true; // 是否继续遍历的标志
-				for (int row = 0; flag && row < tiles.length; row++) {
-					for (int col = 0; flag && col < tiles[0].length; col++) {
-
-						// 匹配发生点击事件的按钮
-						if (focusComponent == covers[row][col] && mask == BTN_L) {
-							open(row, col); // 左键翻开
-							flag = false;
-						} else if (focusComponent == covers[row][col] && mask == BTN_R) {
-							flag(row, col); // 右键标记
-							flag = false;
-						} else if (focusComponent == tiles[row][col] && (mask == BTN_L_R || mask == BTN_M)) {
-							sweep(row, col); // 左键+右键快速排雷(或中键)
-							flag = false;
-						}
-					}
-				}
-				mask = 0; // 重置按键标识
+			public void actionPerformed(ActionEvent e) {
+				saveGame();
 			}
+		});
 
-		};
-
-		// 根据尺寸创建数组
-		tiles = new JLabel[rowSize][colSize];
-		covers = new JButton[rowSize][colSize];
-
-		// 创建容器 (Panel)
-		gamePane = new JPanel();
-		gamePane.setLayout(null);
-
-		// 创建控件
-		for (int r = 0; r < rowSize; r++) {
-			for (int c = 0; c < colSize; c++) {
-				// 格子
-				int num = core.grids[r][c] - '0';
-				tiles[r][c] = new JLabel("" + core.grids[r][c], JLabel.CENTER);
-				gamePane.add(tiles[r][c]);
-				tiles[r][c].setBounds(paddingHorizontal + tileSize * c, paddingVertical + tileSize * r, tileSize, tileSize);
-				tiles[r][c].setBorder(BorderFactory.createLoweredSoftBevelBorder());
-				tiles[r][c].setFont(new Font(null, Font.BOLD, tileSize * 3 / 4));
-				if (num == 0) {
-					tiles[r][c].setText("");
-				} else if (num > 0 && num < 9) {
-					tiles[r][c].setForeground(COLORS_NUM[num - 1]);
-				} else if (core.grids[r][c] == Core.MINE) {
-					tiles[r][c].setText("");
-					tiles[r][c].setIcon(icMine);
-				}
-				tiles[r][c].setVisible(false);
-
-				// 盖子 (按钮)
-				covers[r][c] = new JButton();
-				covers[r][c].setBounds(paddingHorizontal + tileSize * c, paddingVertical + tileSize * r, tileSize, tileSize);
-				setGridStyle(covers[r][c], 0);
-				gamePane.add(covers[r][c]);
-
-				// 绑定事件
-				covers[r][c].addMouseListener(sweepActionListener);
-				tiles[r][c].addMouseListener(sweepActionListener);
-			}
-		}
+		// 调整尺寸 (不超过屏幕可用区域)
+		Insets ins = getInsets(); // 获取窗口边框尺寸
+		Rectangle screen = GraphicsEnvironment.getLocalGraphicsEnvironment().getMaximumWindowBounds();
+		setSize(Math.min(screen.width, paddingHorizontal * 2 + tileSize * colSize + ins.left + ins.right),
+				Math.min(screen.height, paddingVertical * 2 + tileSize * rowSize + ins.top + ins.bottom));
+		setLocationRelativeTo(null); // 窗口居中
 
 		setContentPane(gamePane);
 		revalidate(); // 刷新UI
@@ -355,17 +514,13 @@ public class GUI extends JFrame {
 	private void flag(int row, int col) {
 
 		// 未翻开才可标记
-		if (core.status[row][col] != Core.STAT_OPEN) {
+		if (core.getStatus(row, col) != Core.STAT_OPEN) {
 			core.flag(row, col);
 
 			setTitle(TITLE + " ( Remain: " + core.remain + " , Flag: " + core.flags + " )");
 
 			// 刷新格子状态
-			if (core.status[row][col] == Core.STAT_FLAG) {
-				covers[row][col].setIcon(icFlag);
-			} else {
-				covers[row][col].setIcon(null);
-			}
+			boardView.applyChanged();
 		}
 	}
 
@@ -380,13 +535,8 @@ public class GUI extends JFrame {
 	private void open(int row, int col) {
 
 		// 没有标记且未翻开才可翻开
-		if (core.status[row][col] == Core.STAT_COVER) {
-			core.open(row, col);
-
-			setTitle(TITLE + " ( Remain: " + core.remain + " , Flag: " + core.flags + " )");
-
-			// 刷新所有格子状态
-			refreshStatus();
+		if (core.getStatus(row, col) == Core.STAT_COVER) {
+			reveal(row, col, false);
 		}
 	}
 
@@ -401,79 +551,142 @@ public class GUI extends JFrame {
 	private void sweep(int row, int col) {
 
 		// 已经翻开才可以对周边进行快速排雷
-		if (core.status[row][col] == Core.STAT_OPEN) {
-			core.sweep(row, col);
-
-			setTitle(TITLE + " ( Remain: " + core.remain + " , Flag: " + core.flags + " )");
-
-			// 刷新所有格子状态
-			refreshStatus();
+		if (core.getStatus(row, col) == Core.STAT_OPEN) {
+			reveal(row, col, true);
 		}
 	}
 
 	/**
-	 * 为格子设置预定义的样式
-	 * 
-	 * @param component
-	 *            控件对象
-	 * @param status
-	 *            控件状态 (0:普通状态, 1:焦点状态, 2:按下状态)
+	 * 翻开或快速排雷并刷新
+	 * <p>
+	 * 大棋盘上在工作线程中执行 (连锁翻开可能涉及大量格子)，连锁翻开的过程中每隔约一帧把新翻开的格子
+	 * (由近及远) 交给 EDT 显示。
+	 * 期间棋盘控件处于忙碌状态，忽略所有点击，EDT 不读取核心中正在改变的状态，只从核心复制已经交来的格子。
+	 *
+	 * @param isSweep
+	 *            是否为快速排雷
 	 */
-	private void setGridStyle(JComponent component, int status) {
-		switch (status) {
-		case 1:
-			component.setBorder(BorderFactory.createRaisedSoftBevelBorder());
-			component.setBackground(themeFocusColor);
-			break;
-		case 2:
-			component.setBorder(BorderFactory.createLoweredSoftBevelBorder());
-			component.setBackground(themeColor);
-			break;
-		case 0:
-		default:
-			component.setBorder(BorderFactory.createRaisedSoftBevelBorder());
-			component.setBackground(themeColor);
-			break;
+	private void reveal(final int row, final int col, final boolean isSweep) {
+		if ((long) core.getRowSize() * core.getColSize() < ASYNC_THRESHOLD) {
+			if (isSweep) {
+				core.sweep(row, col);
+			} else {
+				core.open(row, col);
+			}
+			setTitle(TITLE + " ( Remain: " + core.remain + " , Flag: " + core.flags + " )");
+			refreshStatus();
+			return;
 		}
 
+		boardView.setBusy(true);
+		new SwingWorker<Void, int[]>() {
+
+			private int published; // 已交给 EDT 的格子数 (工作线程)
+			private long publishedTime = System.nanoTime();
+			private int applied; // 已显示的格子数 (EDT)
+
+			@Override
+			protected Void doInBackground() {
+				core.revealListener = new Core.RevealListener() {
+					@Override
+					public void revealed(int changedSize) {
+						if (System.nanoTime() - publishedTime >= REVEAL_FRAME_NANOS) {
+							publishTo(changedSize);
+						}
+					}
+				};
+				try {
+					if (isSweep) {
+						core.sweep(row, col);
+					} else {
+						core.open(row, col);
+					}
+				} finally {
+					core.revealListener = null;
+				}
+				publishTo(core.getChangedSize());
+				return null;
+			}
+
+			/**
+			 * 把上次之后翻开的格子交给 EDT (在工作线程中读取核心, 与翻开在同一线程)
+			 */
+			private void publishTo(int changedSize) {
+				if (changedSize > published) {
+					int[] indices = new int[changedSize - published];
+					for (int i = 0; i < indices.length; i++) {
+						indices[i] = core.getChanged(published + i);
+					}
+					publish(indices);
+					published = changedSize;
+				}
+				publishedTime = System.nanoTime();
+			}
+
+			@Override
+			protected void process(List<int[]> batches) {
+				for (int[] indices : batches) {
+					boardView.apply(indices);
+					applied += indices.length;
+				}
+			}
+
+			@Override
+			protected void done() {
+				try {
+					get();
+				} catch (InterruptedException | ExecutionException e) {
+					// 核心可能只完成了一部分操作: 按核心的现状重新同步整个棋盘, 不做结束判定
+					e.printStackTrace();
+					boardView.sync();
+					boardView.setBusy(false);
+					Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+					JOptionPane.showMessageDialog(GUI.this, "  " + cause, TITLE, JOptionPane.ERROR_MESSAGE);
+					return;
+				}
+
+				// 核心已停止工作, 补上尚未交到 EDT 的批次 (不保证在 done 之前全部处理)
+				int size = core.getChangedSize();
+				if (applied < size) {
+					int[] indices = new int[size - applied];
+					for (int i = 0; i < indices.length; i++) {
+						indices[i] = core.getChanged(applied + i);
+					}
+					boardView.apply(indices);
+					applied = size;
+				}
+				boardView.setBusy(false);
+				setTitle(TITLE + " ( Remain: " + core.remain + " , Flag: " + core.flags + " )");
+				finishMove();
+			}
+
+		}.execute();
 	}
 
 	/**
-	 * 刷新所有格子并更新游戏状态
-	 * 
-	 * @param row
-	 *            行索引 (从0起算)
-	 * @param col
-	 *            列索引 (从0起算)
+	 * 刷新上一次操作翻开的格子并更新游戏状态
+	 * <p>
+	 * 只重绘核心记录的变化格子所在的区域 (游戏结束时另外重绘地雷和旗子以标出雷的位置)。
 	 */
 	private void refreshStatus() {
+		boardView.applyChanged();
+		finishMove();
+	}
 
-		for (int r = 0; r < tiles.length; r++) {
-			for (int c = 0; c < tiles[0].length; c++) {
-				boolean isOpened = core.status[r][c] == Core.STAT_OPEN;
-				tiles[r][c].setVisible(isOpened);
-				covers[r][c].setVisible(!isOpened);
-
-				// 游戏结束则标出雷的位置
-				if (core.isGameover) {
-					if (core.isMine(r, c) && core.status[r][c] == Core.STAT_COVER) {
-						// 未标记的雷
-						covers[r][c].setIcon(icMine);
-					} else if (core.isMine(r, c) && core.status[r][c] == Core.STAT_FLAG) {
-						// 标记正确的雷
-						covers[r][c].setIcon(icFlagCorrect);
-					} else if (!core.isMine(r, c) && core.status[r][c] == Core.STAT_FLAG) {
-						// 标记错误的雷
-						covers[r][c].setIcon(icFlagWrong);
-					}
-				}
-			}
+	/**
+	 * 一次操作的格子都已显示之后更新游戏状态
+	 */
+	private void finishMove() {
+		if (core.isGameover) {
+			boardView.showMines(); // 标出所有雷的位置
 		}
 
-		// 游戏结束判定
+		// 游戏结束判定 (显示结果对话框期间在后台准备下一局)
+		if (core.isGameover || core.isWin) {
+			saveRecording();
+			prepare();
+		}
 		if (core.isGameover) {
-			tiles[core.deadRow][core.deadCol].setOpaque(true);
-			tiles[core.deadRow][core.deadCol].setBackground(Color.RED);
 			JOptionPane.showMessageDialog(null, "  Gameover ...", TITLE, JOptionPane.ERROR_MESSAGE);
 			showTitle();
 		} else if (core.isWin) {
@@ -482,10 +695,90 @@ public class GUI extends JFrame {
 		}
 	}
 
+	/**
+	 * 保存本局的记录 (回放时不保存)
+	 */
+	private void saveRecording() {
+		if (core.recording != null) {
+			try {
+				core.recording.save(new File(Recording.PATH_DEFAULT_DIR));
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * 以指定速度回放对局记录 (回放期间不响应棋盘上的操作)
+	 * 
+	 * @param file
+	 *            记录文件
+	 * @param movesPerSecond
+	 *            每秒回放的操作数
+	 */
+	private void replay(File file, int movesPerSecond) throws IOException {
+		final Recording.Reader reader = new Recording.Reader(Files.readAllBytes(file.toPath()));
+		if (movesPerSecond <= 0) {
+			throw new IllegalArgumentException("Illegal speed: " + movesPerSecond);
+		}
+
+		themeColor = CT_PURPLE;
+		themeFocusColor = CT_PURPLE_FOCUS;
+		startGame(reader.rowSize, reader.colSize, reader.mineSize);
+		core.recording = null;
+		reader.init(core);
+		boardView.setCellListener(null);
+		boardView.sync();
+		setTitle(TITLE + " ( Replay: " + file.getName() + " )");
+
+		// 速度超过每毫秒一步时, 每次触发执行多步
+		final int movesPerTick = Math.max(1, movesPerSecond / 1000);
+		replayTimer = new Timer(Math.max(1, 1000 / movesPerSecond), new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				for (int i = 0; i < movesPerTick; i++) {
+					if (!reader.next(core)) {
+						// 记录结束 (对局未分胜负)
+						stopReplay();
+						JOptionPane.showMessageDialog(null, "  Replay finished", TITLE, JOptionPane.PLAIN_MESSAGE);
+						showTitle();
+						return;
+					}
+					if (core.isGameover || core.isWin) {
+						stopReplay();
+					}
+					refreshStatus();
+					if (replayTimer == null) {
+						return;
+					}
+				}
+			}
+		});
+		replayTimer.start();
+	}
+
+	/**
+	 * 停止回放
+	 */
+	private void stopReplay() {
+		if (replayTimer != null) {
+			replayTimer.stop();
+			replayTimer = null;
+		}
+	}
+
 	/**
 	 * Launch the application.
 	 */
 	public static void main(String[] args) {
+		// -metrics: 记录运行指标, 退出时输出到标准错误 (见 Metrics)
+		for (String arg : args) {
+			if ("-metrics".equals(arg)) {
+				Metrics.enable();
+			}
+		}
+		Metrics.printOnExit(System.err);
+
 		EventQueue.invokeLater(new Runnable() {
 			public void run() {
 				try {
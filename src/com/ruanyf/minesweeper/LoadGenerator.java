@@ -0,0 +1,213 @@
+package com.ruanyf.minesweeper;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * 游戏服务器的压力测试
+ * <p>
+ * 每个客户端一个连接 (与服务器一样每个连接一个线程)，不断随机翻开格子，一局结束后立即开始下一局；
+ * 每条命令都等到应答后才发送下一条，记录往返延迟。结束时输出每秒操作数与延迟分位数。
+ * <p>
+ * 延迟记录在各客户端自己的对数分桶直方图中 (微秒, 精度约 3%)，测试期间不分配对象，结束时再合并。
+ *
+ * @author Yaofeng Ruan
+ */
+public class LoadGenerator {
+
+	// 直方图与 Metrics 的分桶相同 (微秒)
+	private static final int BUCKET_SIZE = Metrics.BUCKET_SIZE;
+
+	/**
+	 * 一个客户端: 在截止时间之前不断发送操作
+	 *
+	 * @return 延迟直方图 (最后一个元素为操作数)
+	 */
+	private static long[] runClient(int port, int rowSize, int colSize, int mineSize, long seed, long deadline) throws IOException {
+		long[] histogram = new long[BUCKET_SIZE + 1];
+		SplittableRandom random = new SplittableRandom(seed);
+		byte[] request = new byte[64];
+		byte[] response = new byte[1 << 12];
+
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+			socket.setTcpNoDelay(true);
+			InputStream in = new BufferedInputStream(socket.getInputStream(), 1 << 16);
+			OutputStream out = socket.getOutputStream();
+
+			boolean isPlaying = false;
+			while (System.nanoTime() < deadline) {
+				int length;
+				if (!isPlaying) {
+					length = put(request, 0, "new ");
+					length = putLong(request, length, rowSize);
+					request[length++] = ' ';
+					length = putLong(request, length, colSize);
+					request[length++] = ' ';
+					length = putLong(request, length, mineSize);
+					request[length++] = ' ';
+					length = putLong(request, length, random.nextLong(Long.MAX_VALUE));
+				} else {
+					length = put(request, 0, "o ");
+					length = putLong(request, length, random.nextInt(rowSize));
+					request[length++] = ' ';
+					length = putLong(request, length, random.nextInt(colSize));
+				}
+				request[length++] = '\n';
+
+				long begin = System.nanoTime();
+				out.write(request, 0, length);
+				int size = readLine(in, response);
+				long micros = (System.nanoTime() - begin) / 1000;
+				if (size < 0) {
+					break; // 服务器断开
+				}
+				histogram[Metrics.bucketOf(micros)]++;
+				histogram[BUCKET_SIZE]++;
+
+				// "ok win" / "ok lose" / "err" 之后开始下一局
+				isPlaying = size > 3 && response[0] == 'o' && (response[3] == 'n' || response[3] == 'p');
+			}
+			out.write(new byte[] { 'q', '\n' });
+		}
+		return histogram;
+	}
+
+	/**
+	 * 读取一行应答 (不含换行符, 超出缓冲区的部分丢弃)
+	 *
+	 * @return 读入缓冲区的长度, 连接已断开时返回-1
+	 */
+	private static int readLine(InputStream in, byte[] buffer) throws IOException {
+		int size = 0;
+		int b;
+		while ((b = in.read()) != '\n') {
+			if (b < 0) {
+				return -1;
+			}
+			if (size < buffer.length) {
+				buffer[size++] = (byte) b;
+			}
+		}
+		return size;
+	}
+
+	private static int put(byte[] buffer, int pos, String text) {
+		for (int i = 0; i < text.length(); i++) {
+			buffer[pos++] = (byte) text.charAt(i);
+		}
+		return pos;
+	}
+
+	private static int putLong(byte[] buffer, int pos, long value) {
+		int length = 1;
+		for (long v = value; v >= 10; v /= 10) {
+			length++;
+		}
+		for (int i = pos + length - 1; i >= pos; i--) {
+			buffer[i] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		return pos + length;
+	}
+
+	/**
+	 * 运行压力测试
+	 *
+	 * @param args
+	 *            [-port 端口 (不指定时在本进程内启动服务器)] [-clients 连接数] [-seconds 秒数] [-size 行数 列数 雷数]
+	 */
+	public static void main(String[] args) throws Exception {
+		int port = 0;
+		int clients = 100;
+		int seconds = 10;
+		int[] size = { Core.SIZE_HARD_ROW, Core.SIZE_HARD_COL, Core.SIZE_HARD_MINE };
+		for (int i = 0; i < args.length; i++) {
+			if ("-port".equals(args[i]) && i + 1 < args.length) {
+				port = Integer.parseInt(args[++i]);
+			} else if ("-clients".equals(args[i]) && i + 1 < args.length) {
+				clients = Integer.parseInt(args[++i]);
+			} else if ("-seconds".equals(args[i]) && i + 1 < args.length) {
+				seconds = Integer.parseInt(args[++i]);
+			} else if ("-size".equals(args[i]) && i + 3 < args.length) {
+				for (int j = 0; j < size.length; j++) {
+					size[j] = Integer.parseInt(args[++i]);
+				}
+			}
+		}
+
+		Server server = null;
+		if (port == 0) {
+			server = new Server(0, Server.DEFAULT_IDLE_MILLIS);
+			server.start();
+			port = server.getPort();
+		}
+
+		System.out.printf("%d clients, %ds, %dx%d with %d mines, port %d%n", clients, seconds, size[0], size[1], size[2], port);
+		final long deadline = System.nanoTime() + seconds * 1000000000L;
+		ExecutorService executor = Server.newThreadPerTaskExecutor();
+		List<Future<long[]>> futures = new ArrayList<>(clients);
+		long begin = System.nanoTime();
+		for (int i = 0; i < clients; i++) {
+			final int finalPort = port;
+			final int[] finalSize = size;
+			final long seed = i;
+			futures.add(executor.submit(new Callable<long[]>() {
+				@Override
+				public long[] call() throws IOException {
+					return runClient(finalPort, finalSize[0], finalSize[1], finalSize[2], seed, deadline);
+				}
+			}));
+		}
+
+		// 合并直方图
+		long[] histogram = new long[BUCKET_SIZE + 1];
+		int failed = 0;
+		for (Future<long[]> future : futures) {
+			try {
+				long[] result = future.get();
+				for (int i = 0; i < histogram.length; i++) {
+					histogram[i] += result[i];
+				}
+			} catch (ExecutionException e) {
+				failed++;
+			}
+		}
+		double elapsed = (System.nanoTime() - begin) / 1e9;
+		executor.shutdown();
+		if (server != null) {
+			server.stop();
+		}
+
+		long moves = histogram[BUCKET_SIZE];
+		System.out.printf("%d moves, %.0f moves/s, p50 %d us, p99 %d us, p99.9 %d us, max %d us%s%n", moves, moves / elapsed,
+				percentile(histogram, moves, 0.5), percentile(histogram, moves, 0.99), percentile(histogram, moves, 0.999),
+				percentile(histogram, moves, 1), failed > 0 ? ", " + failed + " clients failed" : "");
+	}
+
+	/**
+	 * 求延迟分位数 (桶的下界, 微秒)
+	 */
+	private static long percentile(long[] histogram, long total, double quantile) {
+		long rank = Math.max(1, (long) Math.ceil(total * quantile));
+		long count = 0;
+		for (int i = 0; i < BUCKET_SIZE; i++) {
+			count += histogram[i];
+			if (count >= rank) {
+				return Metrics.lowerOf(i);
+			}
+		}
+		return 0;
+	}
+
+}
@@ -0,0 +1,250 @@
+package com.ruanyf.minesweeper;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 运行指标 (计数器与延迟直方图) 的注册表
+ * <p>
+ * 计数器基于 {@link LongAdder}，直方图为固定的对数分桶 ({@link AtomicLongArray})，记录时都不加锁、不分配对象。
+ * 默认关闭：关闭时计数与记录只读一次开关即返回，计时处 {@link #now()} 返回0，不调用 {@link System#nanoTime()}。
+ * 以 {@code -Dminesweeper.metrics=true} 启动或调用 {@link #enable()} 打开，{@link #export()} 随时导出为文本。
+ * <p>
+ * 指标按名称注册 (同名返回同一个对象)，通常在使用的类中保存为静态常量。
+ * 更细的逐次操作记录见 {@link Events} (JFR 事件)。
+ *
+ * @author Yaofeng Ruan
+ */
+public final class Metrics {
+
+	// 直方图: 64 以内每个值一个桶, 之后每个2的幂区间分为32个桶 (精度约 3%)
+	private static final int LINEAR_BUCKETS = 64;
+	private static final int SUB_BUCKETS = 32;
+	static final int BUCKET_SIZE = LINEAR_BUCKETS + (63 - 6) * SUB_BUCKETS;
+
+	private static volatile boolean isEnabled = Boolean.getBoolean("minesweeper.metrics");
+
+	private static final Map<String, Counter> counters = new ConcurrentHashMap<>();
+	private static final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+	private Metrics() {
+	}
+
+	/**
+	 * 计数器
+	 */
+	public static final class Counter {
+
+		private final LongAdder adder = new LongAdder();
+
+		private Counter() {
+		}
+
+		public void increment() {
+			if (isEnabled) {
+				adder.increment();
+			}
+		}
+
+		public void add(long n) {
+			if (isEnabled) {
+				adder.add(n);
+			}
+		}
+
+		public long get() {
+			return adder.sum();
+		}
+
+	}
+
+	/**
+	 * 固定分桶的直方图 (纳秒等非负整数)
+	 */
+	public static final class Histogram {
+
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_SIZE);
+		private final LongAdder count = new LongAdder();
+		private final LongAdder sum = new LongAdder();
+		private final AtomicLong max = new AtomicLong();
+
+		private Histogram() {
+		}
+
+		public void record(long value) {
+			if (!isEnabled) {
+				return;
+			}
+			buckets.incrementAndGet(bucketOf(value));
+			count.increment();
+			sum.add(value);
+			long current = max.get();
+			while (value > current && !max.compareAndSet(current, value)) {
+				current = max.get();
+			}
+		}
+
+		/**
+		 * 记录从 {@link Metrics#now()} 起经过的纳秒数 (开始时指标关闭则忽略)
+		 */
+		public void recordSince(long begin) {
+			if (begin != 0) {
+				record(System.nanoTime() - begin);
+			}
+		}
+
+		public long getCount() {
+			return count.sum();
+		}
+
+		public long getMax() {
+			return max.get();
+		}
+
+		/**
+		 * 求分位数 (桶的下界)
+		 *
+		 * @param quantile
+		 *            0 ~ 1
+		 */
+		public long percentile(double quantile) {
+			long total = count.sum();
+			long rank = Math.max(1, (long) Math.ceil(total * quantile));
+			long n = 0;
+			for (int i = 0; i < BUCKET_SIZE; i++) {
+				n += buckets.get(i);
+				if (n >= rank) {
+					return lowerOf(i);
+				}
+			}
+			return 0;
+		}
+
+	}
+
+	/**
+	 * 值所在的桶
+	 */
+	static int bucketOf(long value) {
+		if (value < LINEAR_BUCKETS) {
+			return (int) Math.max(0, value);
+		}
+		int exp = 63 - Long.numberOfLeadingZeros(value); // >= 6
+		int sub = (int) (value >>> (exp - 5)) & (SUB_BUCKETS - 1);
+		return LINEAR_BUCKETS + (exp - 6) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * 桶的下界
+	 */
+	static long lowerOf(int bucket) {
+		if (bucket < LINEAR_BUCKETS) {
+			return bucket;
+		}
+		int exp = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 6;
+		int sub = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+		return (long) (SUB_BUCKETS + sub) << (exp - 5);
+	}
+
+	public static boolean isEnabled() {
+		return isEnabled;
+	}
+
+	/**
+	 * 打开指标记录
+	 */
+	public static void enable() {
+		isEnabled = true;
+	}
+
+	/**
+	 * 关闭指标记录 (已记录的值保留)
+	 */
+	public static void disable() {
+		isEnabled = false;
+	}
+
+	/**
+	 * 获取 (或注册) 计数器
+	 */
+	public static Counter counter(String name) {
+		Counter counter = counters.get(name);
+		if (counter == null) {
+			counters.putIfAbsent(name, new Counter());
+			counter = counters.get(name);
+		}
+		return counter;
+	}
+
+	/**
+	 * 获取 (或注册) 直方图
+	 */
+	public static Histogram histogram(String name) {
+		Histogram histogram = histograms.get(name);
+		if (histogram == null) {
+			histograms.putIfAbsent(name, new Histogram());
+			histogram = histograms.get(name);
+		}
+		return histogram;
+	}
+
+	/**
+	 * 计时起点 (指标关闭时返回0, 配合 {@link Histogram#recordSince(long)} 使用)
+	 */
+	public static long now() {
+		return isEnabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * 导出为文本: 每行一个指标, 按名称排序, 没有记录过的指标省略
+	 * <p>
+	 * 计数器为 {@code 名称 值}，直方图为 {@code 名称 count=次数 mean=均值 p50=.. p99=.. p999=.. max=..}
+	 */
+	public static String export() {
+		StringBuilder text = new StringBuilder();
+		for (Map.Entry<String, Counter> entry : new TreeMap<>(counters).entrySet()) {
+			long value = entry.getValue().get();
+			if (value != 0) {
+				text.append(entry.getKey()).append(' ').append(value).append('\n');
+			}
+		}
+		for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+			Histogram histogram = entry.getValue();
+			long count = histogram.getCount();
+			if (count == 0) {
+				continue;
+			}
+			text.append(entry.getKey())
+					.append(" count=").append(count)
+					.append(" mean=").append(histogram.sum.sum() / count)
+					.append(" p50=").append(histogram.percentile(0.5))
+					.append(" p99=").append(histogram.percentile(0.99))
+					.append(" p999=").append(histogram.percentile(0.999))
+					.append(" max=").append(histogram.getMax())
+					.append('\n');
+		}
+		return text.toString();
+	}
+
+	/**
+	 * 指标打开时, 在进程退出时把指标输出到指定的流 (供命令行程序与 GUI 使用)
+	 */
+	public static void printOnExit(final PrintStream out) {
+		if (!isEnabled) {
+			return;
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			@Override
+			public void run() {
+				out.print(export());
+				out.flush();
+			}
+		}, "metrics-export"));
+	}
+
+}
@@ -0,0 +1,236 @@
+package com.ruanyf.minesweeper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无需猜测的棋盘生成器
+ * <p>
+ * 在工作线程池中不断随机生成候选棋盘，用 {@link Solver} 从第一次点击开始不猜测地求解，
+ * 能够解开的棋盘放入对应难度的有界队列中备用。开始游戏时直接从队列中取出，无需等待。
+ * <p>
+ * 由于棋盘完全由 (尺寸, 种子, 第一次点击的格子) 决定，队列中只保存这几个数值。
+ *
+ * @author Yaofeng Ruan
+ */
+public class NoGuessGenerator {
+
+	// 预置难度的尺寸 (按 Core.DIFFICULTY_* 索引)
+	public static final int[][] PRESETS = {
+			{ Core.SIZE_EASY_ROW, Core.SIZE_EASY_COL, Core.SIZE_EASY_MINE },
+			{ Core.SIZE_NORMAL_ROW, Core.SIZE_NORMAL_COL, Core.SIZE_NORMAL_MINE },
+			{ Core.SIZE_HARD_ROW, Core.SIZE_HARD_COL, Core.SIZE_HARD_MINE } };
+	public static final String[] PRESET_NAMES = { "Easy", "Normal", "Hard" };
+
+	// 默认参数
+	public static final int DEFAULT_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+	public static final int DEFAULT_CAPACITY = 8;
+
+	/**
+	 * 一副可以不猜测解开的棋盘
+	 */
+	public static class Deal {
+
+		public final int rowSize, colSize, mineSize;
+		public final long seed;
+		public final int startRow, startCol; // 第一次点击的格子
+
+		public Deal(int rowSize, int colSize, int mineSize, long seed, int startRow, int startCol) {
+			this.rowSize = rowSize;
+			this.colSize = colSize;
+			this.mineSize = mineSize;
+			this.seed = seed;
+			this.startRow = startRow;
+			this.startCol = startCol;
+		}
+
+		/**
+		 * 在指定核心上重现这副棋盘 (并翻开第一次点击的格子)
+		 *
+		 * @param core
+		 *            游戏核心
+		 */
+		public void apply(Core core) {
+			core.initLazy(rowSize, colSize, mineSize, seed);
+			core.open(startRow, startCol);
+		}
+
+	}
+
+	private final ExecutorService pool;
+	private final List<BlockingQueue<Deal>> queues;
+
+	// 统计 (按难度索引)
+	private final LongAdder[] attempts;
+	private final LongAdder[] accepted;
+	private final long startTime = System.nanoTime();
+
+	// 每个工作线程复用自己的核心与求解器
+	private final ThreadLocal<Solver> solvers = new ThreadLocal<Solver>() {
+		@Override
+		protected Solver initialValue() {
+			return new Solver(new Core());
+		}
+	};
+
+	/**
+	 * 使用默认参数创建生成器
+	 */
+	public NoGuessGenerator() {
+		this(DEFAULT_THREADS, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * 创建生成器并立即开始填充各难度的队列
+	 *
+	 * @param threads
+	 *            工作线程数
+	 * @param capacity
+	 *            每个难度备用棋盘的数量上限
+	 */
+	public NoGuessGenerator(int threads, int capacity) {
+		if (threads <= 0 || capacity <= 0) {
+			throw new IllegalArgumentException("threads and capacity must be positive");
+		}
+
+		pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "no-guess-generator");
+				t.setDaemon(true);
+				t.setPriority(Thread.MIN_PRIORITY);
+				return t;
+			}
+		});
+
+		queues = new ArrayList<>(PRESETS.length);
+		attempts = new LongAdder[PRESETS.length];
+		accepted = new LongAdder[PRESETS.length];
+		for (int i = 0; i < PRESETS.length; i++) {
+			queues.add(new ArrayBlockingQueue<Deal>(capacity));
+			attempts[i] = new LongAdder();
+			accepted[i] = new LongAdder();
+		}
+
+		// 每个空位对应一个生成任务, 取走一副棋盘时再补充一个任务
+		for (int n = 0; n < capacity; n++) {
+			for (int i = 0; i < PRESETS.length; i++) {
+				refill(i);
+			}
+		}
+	}
+
+	/**
+	 * 取出一副指定难度的棋盘 (队列为空时在当前线程生成)
+	 *
+	 * @param difficulty
+	 *            难度 (Core.DIFFICULTY_*)
+	 * @return 可以不猜测解开的棋盘
+	 */
+	public Deal take(int difficulty) {
+		Deal deal = queues.get(difficulty).poll();
+		if (deal == null) {
+			deal = generate(difficulty, new Solver(new Core()));
+		} else {
+			refill(difficulty);
+		}
+		return deal;
+	}
+
+	/**
+	 * 停止生成
+	 */
+	public void shutdown() {
+		pool.shutdownNow();
+	}
+
+	/**
+	 * 提交一个生成任务, 生成成功后放入对应难度的队列
+	 */
+	private void refill(int difficulty) {
+		if (pool.isShutdown()) {
+			return;
+		}
+		pool.execute(new Runnable() {
+			@Override
+			public void run() {
+				Deal deal = generate(difficulty, solvers.get());
+				if (deal != null) {
+					queues.get(difficulty).offer(deal);
+				}
+			}
+		});
+	}
+
+	/**
+	 * 不断生成候选棋盘, 直至得到一副可以不猜测解开的棋盘
+	 *
+	 * @param difficulty
+	 *            难度 (Core.DIFFICULTY_*)
+	 * @param solver
+	 *            用于验证的求解器 (连同其核心一起复用)
+	 * @return 可以不猜测解开的棋盘, 若线程被中断则返回null
+	 */
+	private Deal generate(int difficulty, Solver solver) {
+		int[] preset = PRESETS[difficulty];
+		SplittableRandom random = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+
+		while (!Thread.currentThread().isInterrupted()) {
+			Deal deal = new Deal(preset[0], preset[1], preset[2], random.nextLong(), random.nextInt(preset[0]), random.nextInt(preset[1]));
+			attempts[difficulty].increment();
+
+			deal.apply(solver.getCore());
+			if (solver.solve()) {
+				accepted[difficulty].increment();
+				return deal;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 生成统计报告 (各难度的接受率与每秒生成的棋盘数)
+	 *
+	 * @return 报告文本
+	 */
+	public String report() {
+		double seconds = (System.nanoTime() - startTime) / 1e9;
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < PRESETS.length; i++) {
+			long tried = attempts[i].sum();
+			long ok = accepted[i].sum();
+			sb.append(String.format("%-8s accepted %8d / %8d (%6.2f%%)  %10.1f boards/s  ready %d%n",
+					PRESET_NAMES[i], ok, tried, tried == 0 ? 0.0 : ok * 100.0 / tried, ok / seconds, queues.get(i).size()));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 运行生成器并定期输出统计 (用于评估生成速度)
+	 *
+	 * @param args
+	 *            [工作线程数] [队列容量] [运行秒数]
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_THREADS;
+		int capacity = args.length > 1 ? Integer.parseInt(args[1]) : 1 << 16;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+		NoGuessGenerator generator = new NoGuessGenerator(threads, capacity);
+		for (int i = 0; i < seconds; i++) {
+			TimeUnit.SECONDS.sleep(1);
+			System.out.println(generator.report());
+		}
+		generator.shutdown();
+	}
+
+}
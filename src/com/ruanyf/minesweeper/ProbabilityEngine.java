@@ -0,0 +1,800 @@
+package com.ruanyf.minesweeper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 精确的地雷概率计算
+ * <p>
+ * 计算每个未翻开格子是地雷的精确概率：
+ * <ol>
+ * <li>收集前沿：已翻开的数字格 (约束) 与其周边的未知格子 (变量)</li>
+ * <li>按约束共享的变量将前沿划分为互不相关的连通分量</li>
+ * <li>对每个分量按变量顺序回溯枚举，以 (位置, 活跃约束的剩余雷数) 为状态做记忆化，
+ * 得到各雷数下的解的数量，以及每个变量为地雷的解的数量</li>
+ * <li>结合剩余雷数，以组合数 C(非前沿格子数, 剩余雷数) 为权重合并各分量</li>
+ * </ol>
+ * 计算直接读取核心的棋盘、标记数与地雷数，不复制局面；计算期间调用方不得修改核心。
+ * 计算可在工作线程中执行 ({@link #submit(ExecutorService)})，并可随时取消：每次计算记下开始 (或提交) 时的代数，
+ * {@link #cancel()} 使代数加1，之前开始或提交的计算在下一次检查时抛出 {@link CancellationException}。
+ * 计算结果保存在计算器的字段中，同一计算器上的计算互斥执行 (后一个等前一个结束或响应取消后才开始)。
+ *
+ * @author Yaofeng Ruan
+ */
+public class ProbabilityEngine {
+
+	private final Core core;
+
+	private final AtomicInteger generation = new AtomicInteger(); // 取消的代数 (每次取消加1)
+	private int token; // 当前计算所属的代数 (持有计算器的锁时访问)
+
+	// 计算结果
+	private int[] cellId = new int[0]; // 棋盘下标 -> 前沿变量编号 (-1 表示非前沿)
+	private int[] vars = new int[0]; // 前沿变量编号 -> 棋盘下标
+	private double[] probability = new double[0]; // 前沿变量为地雷的概率
+	private int varSize;
+	private double otherProbability; // 非前沿的未知格子为地雷的概率
+	private int safestIndex = -1;
+
+	// 计算过程中的缓冲区 (每次计算时清空复用, 不够用时才扩大)
+	private int[] conCells = new int[0]; // 约束编号 -> 棋盘下标
+	private int[] conNeeds = new int[0]; // 约束编号 -> 剩余雷数
+	private int conSize;
+	private int[] parent = new int[0]; // 并查集 (前沿变量编号)
+	private int[] groupOf = new int[0]; // 并查集的根 -> 分量序号 (-1 表示尚未分组)
+	private final List<Component> components = new ArrayList<>(); // 前 componentSize 个有效, 其余留待复用
+	private int componentSize;
+	private int[] position = new int[0]; // 前沿变量编号 -> 在当前分量中的位置 (-1 表示不在当前分量)
+	private int[][] conVars = new int[0][]; // 当前分量的约束 -> 所含变量的位置 (前 conVarSize 个有效, 升序)
+	private int[] conVarSize = new int[0];
+	private double[][] prefix = new double[0][]; // 前 i 个分量的雷数分布
+	private double[][] suffix = new double[0][]; // 后 i 个分量的雷数分布
+	private int[] prefixLength = new int[0];
+	private int[] suffixLength = new int[0];
+	private double[] others = new double[0]; // 其余分量的雷数分布
+	private double[] weight = new double[0]; // 组合数权重
+	private double[] logWeight = new double[0];
+	private double[] g = new double[0];
+
+	// 分量枚举的缓冲区 (节点按层连续编号, 键与分布平铺存放)
+	private int[] varConStart = new int[0]; // 变量 -> 在 varConList 中的起始位置
+	private int[] varConList = new int[0]; // 变量所属的约束
+	private int[] varConRemain = new int[0]; // 该约束在此变量之后还剩几个变量
+	private int[] activeStart = new int[0]; // 位置 -> 在 activeList 中的起始位置
+	private int[] activeList = new int[0]; // 跨越各位置的约束 (即该位置节点的键所对应的约束)
+	private byte[] residual = new byte[0]; // 当前节点各约束的剩余雷数
+	private int[] levelStart = new int[0]; // 层 -> 首个节点
+	private int[] nodeKey = new int[0]; // 节点 -> 键 (活跃约束的剩余雷数) 在 keys 中的起始位置
+	private int[] nodeHash = new int[0];
+	private int[] next0 = new int[0]; // 当前变量不是地雷时到达的节点 (-1 表示无)
+	private int[] next1 = new int[0]; // 当前变量是地雷时到达的节点 (-1 表示无)
+	private int nodeSize;
+	private byte[] keys = new byte[0];
+	private int keySize;
+	private double[] dist = new double[0]; // 每个节点 n + 2 个: 到达该节点的雷数分布 (层号 + 1 个), 其后为从该节点出发的分布
+	private int[] table = new int[0]; // 下一层节点的散列表 (开放寻址, -1 为空)
+
+	/**
+	 * 创建绑定到指定核心的概率计算器
+	 *
+	 * @param core
+	 *            游戏核心
+	 */
+	public ProbabilityEngine(Core core) {
+		this.core = core;
+	}
+
+	/**
+	 * 在指定线程池中计算 (可通过 Future.cancel(true) 取消)
+	 *
+	 * @param executor
+	 *            线程池
+	 * @return 计算任务
+	 */
+	public Future<?> submit(ExecutorService executor) {
+		// 代数在提交时确定, 任务开始执行之前的取消同样有效
+		final int token = generation.get();
+		return executor.submit(new Runnable() {
+			@Override
+			public void run() {
+				compute(token);
+			}
+		});
+	}
+
+	/**
+	 * 取消此前开始或提交的所有计算 (之后开始或提交的计算不受影响)
+	 */
+	public void cancel() {
+		generation.incrementAndGet();
+	}
+
+	/**
+	 * 获取指定格子为地雷的概率 (需先完成计算)
+	 *
+	 * @param row
+	 *            行索引 (从0起算)
+	 * @param col
+	 *            列索引 (从0起算)
+	 * @return 已翻开的格子为0, 已标记的格子为1
+	 */
+	public double getProbability(int row, int col) {
+		Board board = core.getBoard();
+		int index = board.index(row, col);
+		switch (Board.stat(board.cells[index])) {
+		case Core.STAT_OPEN:
+			return 0;
+		case Core.STAT_FLAG:
+			return 1;
+		default:
+			return cellId[index] >= 0 ? probability[cellId[index]] : otherProbability;
+		}
+	}
+
+	/**
+	 * 获取最安全 (为地雷的概率最低) 的未知格子的行索引, 没有未知格子时为-1
+	 */
+	public int getSafestRow() {
+		return safestIndex < 0 ? -1 : core.getBoard().rowOf(safestIndex);
+	}
+
+	/**
+	 * 获取最安全 (为地雷的概率最低) 的未知格子的列索引, 没有未知格子时为-1
+	 */
+	public int getSafestCol() {
+		return safestIndex < 0 ? -1 : core.getBoard().colOf(safestIndex);
+	}
+
+	/**
+	 * 计算所有未知格子为地雷的概率
+	 *
+	 * @throws CancellationException
+	 *             计算被取消 (或线程被中断)
+	 */
+	public void compute() {
+		compute(generation.get());
+	}
+
+	/**
+	 * 计算所有未知格子为地雷的概率 (属于指定代数, 代数改变即取消)
+	 */
+	private synchronized void compute(int token) {
+		this.token = token;
+		checkCancelled();
+
+		Board board = core.getBoard();
+		byte[] cells = board.cells;
+		int[] offset = board.offsetAround;
+
+		// 清除上一次的前沿编号
+		if (cellId.length != cells.length) {
+			cellId = new int[cells.length];
+			Arrays.fill(cellId, -1);
+		} else {
+			for (int i = 0; i < varSize; i++) {
+				cellId[vars[i]] = -1;
+			}
+		}
+		varSize = 0;
+		conSize = 0;
+		safestIndex = -1;
+
+		// 收集约束与前沿变量, 同时统计未知格子总数
+		int unknownSize = 0;
+		int anyUnknown = -1;
+		for (int index = 0; index < cells.length; index++) {
+			byte cell = cells[index];
+			int stat = Board.stat(cell);
+			if (stat == Core.STAT_COVER) {
+				unknownSize++;
+				anyUnknown = index;
+				continue;
+			}
+			if (stat != Core.STAT_OPEN || (cell & (Board.BIT_BORDER | Board.BIT_MINE)) != 0 || Board.count(cell) == 0) {
+				continue;
+			}
+
+			int need = Board.count(cell);
+			boolean hasUnknown = false;
+			for (int i = 0; i < offset.length; i++) {
+				int around = index + offset[i];
+				int aroundStat = Board.stat(cells[around]);
+				if (aroundStat == Core.STAT_FLAG) {
+					need--;
+				} else if (aroundStat == Core.STAT_COVER) {
+					hasUnknown = true;
+					if (cellId[around] < 0) {
+						addVar(around);
+					}
+				}
+			}
+			if (hasUnknown) {
+				addConstraint(index, need);
+			}
+		}
+
+		// 按共享变量合并连通分量 (并查集)
+		if (parent.length < varSize) {
+			parent = new int[vars.length];
+			groupOf = new int[vars.length];
+		}
+		for (int i = 0; i < varSize; i++) {
+			parent[i] = i;
+			groupOf[i] = -1;
+		}
+		for (int c = 0; c < conSize; c++) {
+			int first = -1;
+			for (int i = 0; i < offset.length; i++) {
+				int around = conCells[c] + offset[i];
+				int id = cellId[around];
+				if (id >= 0 && Board.stat(cells[around]) == Core.STAT_COVER) {
+					if (first < 0) {
+						first = id;
+					} else {
+						parent[find(parent, id)] = find(parent, first);
+					}
+				}
+			}
+		}
+
+		// 分组
+		componentSize = 0;
+		for (int c = 0; c < conSize; c++) {
+			int root = -1;
+			for (int i = 0; i < offset.length && root < 0; i++) {
+				int around = conCells[c] + offset[i];
+				if (cellId[around] >= 0 && Board.stat(cells[around]) == Core.STAT_COVER) {
+					root = find(parent, cellId[around]);
+				}
+			}
+			if (groupOf[root] < 0) {
+				if (componentSize == components.size()) {
+					components.add(new Component());
+				}
+				groupOf[root] = componentSize;
+				components.get(componentSize++).clear();
+			}
+			components.get(groupOf[root]).addConstraint(c);
+		}
+
+		// 逐个分量枚举
+		for (int c = 0; c < componentSize; c++) {
+			components.get(c).solve(board);
+		}
+
+		combine(unknownSize - varSize, core.getMineSize() - core.flags);
+
+		// 最安全的格子
+		double best = Double.MAX_VALUE;
+		for (int i = 0; i < varSize; i++) {
+			if (probability[i] < best) {
+				best = probability[i];
+				safestIndex = vars[i];
+			}
+		}
+		if (unknownSize > varSize && otherProbability < best) {
+			// 找一个非前沿的未知格子
+			for (int index = anyUnknown; index >= 0; index--) {
+				if (Board.stat(cells[index]) == Core.STAT_COVER && cellId[index] < 0) {
+					safestIndex = index;
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 将格子登记为前沿变量
+	 */
+	private void addVar(int index) {
+		if (varSize == vars.length) {
+			vars = Arrays.copyOf(vars, Math.max(16, varSize * 2));
+			probability = Arrays.copyOf(probability, vars.length);
+		}
+		cellId[index] = varSize;
+		vars[varSize++] = index;
+	}
+
+	/**
+	 * 登记一个约束 (周边有未知格子的数字格)
+	 */
+	private void addConstraint(int index, int need) {
+		if (conSize == conCells.length) {
+			conCells = Arrays.copyOf(conCells, Math.max(16, conSize * 2));
+			conNeeds = Arrays.copyOf(conNeeds, conCells.length);
+		}
+		conCells[conSize] = index;
+		conNeeds[conSize++] = need;
+	}
+
+	/**
+	 * 并查集查找 (路径减半)
+	 */
+	private static int find(int[] parent, int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	/**
+	 * 检查是否已被取消
+	 */
+	private void checkCancelled() {
+		if (token != generation.get() || Thread.currentThread().isInterrupted()) {
+			throw new CancellationException();
+		}
+	}
+
+	/**
+	 * 结合剩余雷数合并各分量, 得到每个格子的概率
+	 *
+	 * @param otherSize
+	 *            非前沿的未知格子数
+	 * @param remainMines
+	 *            剩余 (未标记的) 雷数
+	 */
+	private void combine(int otherSize, int remainMines) {
+		int m = componentSize;
+
+		// 前缀与后缀卷积 (前 i 个 / 后 i 个分量的雷数分布)
+		if (prefix.length < m + 1) {
+			prefix = Arrays.copyOf(prefix, m + 1);
+			suffix = Arrays.copyOf(suffix, m + 1);
+			prefixLength = Arrays.copyOf(prefixLength, m + 1);
+			suffixLength = Arrays.copyOf(suffixLength, m + 1);
+		}
+		prefix[0] = ensure(prefix[0], 1);
+		prefix[0][0] = 1;
+		prefixLength[0] = 1;
+		suffix[m] = ensure(suffix[m], 1);
+		suffix[m][0] = 1;
+		suffixLength[m] = 1;
+		for (int i = 0; i < m; i++) {
+			Component component = components.get(i);
+			prefixLength[i + 1] = prefixLength[i] + component.size;
+			prefix[i + 1] = ensure(prefix[i + 1], prefixLength[i + 1]);
+			convolve(prefix[i], prefixLength[i], component.total, component.size + 1, prefix[i + 1]);
+		}
+		for (int i = m - 1; i >= 0; i--) {
+			Component component = components.get(i);
+			suffixLength[i] = component.size + suffixLength[i + 1];
+			suffix[i] = ensure(suffix[i], suffixLength[i]);
+			convolve(component.total, component.size + 1, suffix[i + 1], suffixLength[i + 1], suffix[i]);
+		}
+
+		// 前沿共有 s 个雷时, 非前沿格子的组合数权重 C(otherSize, remainMines - s)
+		int maxFrontierMines = prefixLength[m] - 1;
+		binomialWeights(otherSize, remainMines, maxFrontierMines);
+
+		// 非前沿格子的概率 = 非前沿雷数的期望 / 非前沿格子数
+		double sum = 0;
+		double expected = 0;
+		for (int s = 0; s <= maxFrontierMines; s++) {
+			double w = prefix[m][s] * weight[s];
+			sum += w;
+			expected += w * (remainMines - s);
+		}
+		otherProbability = otherSize > 0 && sum > 0 ? expected / sum / otherSize : 0;
+
+		// 前沿格子的概率
+		for (int c = 0; c < m; c++) {
+			checkCancelled();
+			Component component = components.get(c);
+			int othersLength = prefixLength[c] + suffixLength[c + 1] - 1;
+			others = ensure(others, othersLength);
+			convolve(prefix[c], prefixLength[c], suffix[c + 1], suffixLength[c + 1], others);
+
+			// g[k]: 本分量有 k 个雷时其余部分的总权重
+			int length = component.size + 1;
+			g = ensure(g, length);
+			for (int k = 0; k < length; k++) {
+				g[k] = 0;
+				for (int s = 0; s < othersLength && k + s <= maxFrontierMines; s++) {
+					g[k] += others[s] * weight[k + s];
+				}
+			}
+
+			double total = dot(component.total, g, length);
+			for (int v = 0; v < component.size; v++) {
+				probability[component.ids[v]] = total > 0 ? dot(component.mines[v], g, length) / total : 0;
+			}
+		}
+	}
+
+	/**
+	 * 计算相对的组合数权重 w[s] ∝ C(n, r - s), 存入 weight (s = 0 ~ maxS, 越界时为0, 最大值归一化为1)
+	 */
+	private void binomialWeights(int n, int r, int maxS) {
+		if (weight.length < maxS + 1) {
+			weight = new double[Math.max(maxS + 1, weight.length * 2)];
+			logWeight = new double[weight.length];
+		}
+		double[] log = logWeight;
+		Arrays.fill(weight, 0, maxS + 1, 0);
+		Arrays.fill(log, 0, maxS + 1, 0);
+		int lower = Math.max(0, r - n); // 合法的 s 的下界 (r - s ≤ n)
+		int upper = Math.min(maxS, r); // 合法的 s 的上界 (r - s ≥ 0)
+		if (lower > upper) {
+			return;
+		}
+
+		// 由 s = upper (即 k = r - upper) 开始递推: C(n, k + 1) = C(n, k) * (n - k) / (k + 1)
+		double max = 0;
+		for (int s = upper - 1; s >= lower; s--) {
+			int k = r - s - 1;
+			log[s] = log[s + 1] + Math.log((double) (n - k) / (k + 1));
+			max = Math.max(max, log[s]);
+		}
+		for (int s = lower; s <= upper; s++) {
+			weight[s] = Math.exp(log[s] - max);
+		}
+	}
+
+	/**
+	 * 获取长度至少为 length 的缓冲区 (够用时原样返回, 扩大时保留原有内容)
+	 */
+	private static double[] ensure(double[] buffer, int length) {
+		if (buffer == null) {
+			return new double[length];
+		}
+		return buffer.length >= length ? buffer : Arrays.copyOf(buffer, Math.max(length, buffer.length * 2));
+	}
+
+	private static int[] ensure(int[] buffer, int length) {
+		return buffer.length >= length ? buffer : Arrays.copyOf(buffer, Math.max(length, buffer.length * 2));
+	}
+
+	private static byte[] ensure(byte[] buffer, int length) {
+		return buffer.length >= length ? buffer : Arrays.copyOf(buffer, Math.max(length, buffer.length * 2));
+	}
+
+	/**
+	 * 新建一个枚举节点 (分布清零, 尚无子节点)
+	 *
+	 * @param key
+	 *            键在 keys 中的起始位置
+	 * @param width
+	 *            每个节点的分布数
+	 * @return 节点编号
+	 */
+	private int newNode(int key, int hash, int width) {
+		int node = nodeSize++;
+		if (node == nodeKey.length) {
+			int capacity = Math.max(64, node * 2);
+			nodeKey = Arrays.copyOf(nodeKey, capacity);
+			nodeHash = Arrays.copyOf(nodeHash, capacity);
+			next0 = Arrays.copyOf(next0, capacity);
+			next1 = Arrays.copyOf(next1, capacity);
+		}
+		nodeKey[node] = key;
+		nodeHash[node] = hash;
+		next0[node] = -1;
+		next1[node] = -1;
+		dist = ensure(dist, nodeSize * width);
+		Arrays.fill(dist, node * width, nodeSize * width, 0);
+		return node;
+	}
+
+	/**
+	 * 比较 keys 中的两个键
+	 */
+	private boolean sameKey(int a, int b, int length) {
+		for (int j = 0; j < length; j++) {
+			if (keys[a + j] != keys[b + j]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 卷积 (多项式乘法), 结果写入 c 的前 aLength + bLength - 1 个元素
+	 */
+	private static void convolve(double[] a, int aLength, double[] b, int bLength, double[] c) {
+		Arrays.fill(c, 0, aLength + bLength - 1, 0);
+		for (int i = 0; i < aLength; i++) {
+			if (a[i] != 0) {
+				for (int j = 0; j < bLength; j++) {
+					c[i + j] += a[i] * b[j];
+				}
+			}
+		}
+	}
+
+	/**
+	 * 点积 (前 length 个元素)
+	 */
+	private static double dot(double[] a, double[] b, int length) {
+		double sum = 0;
+		for (int i = 0; i < length; i++) {
+			sum += a[i] * b[i];
+		}
+		return sum;
+	}
+
+	/**
+	 * 前沿的一个连通分量
+	 */
+	private class Component {
+
+		private int[] cons = new int[8]; // 分量内的约束编号
+		private int conCount;
+
+		int[] ids = new int[8]; // 分量内的变量编号 (按枚举顺序, 前 size 个有效)
+		int size;
+		double[] total; // total[k]: 分量内恰有 k 个雷的解的数量 (归一化, 前 size + 1 个有效)
+		double[][] mines = new double[0][]; // mines[v][k]: 分量内恰有 k 个雷且第 v 个变量为地雷的解的数量 (前 size 行有效)
+
+		/**
+		 * 清空 (复用于下一次计算)
+		 */
+		void clear() {
+			conCount = 0;
+			size = 0;
+		}
+
+		void addConstraint(int c) {
+			if (conCount == cons.length) {
+				cons = Arrays.copyOf(cons, conCount * 2);
+			}
+			cons[conCount++] = c;
+		}
+
+		private void addId(int id) {
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+			}
+			ids[size++] = id;
+		}
+
+		/**
+		 * 枚举分量的所有解
+		 * <p>
+		 * 按变量顺序逐个决定是否为地雷，状态为 (位置, 跨越该位置的约束的剩余雷数)，
+		 * 相同状态合并为一个节点 (记忆化)。先正向累计到达每个节点的雷数分布，
+		 * 再反向累计从每个节点出发的雷数分布，两者卷积即得每个变量为地雷的解的数量。
+		 */
+		void solve(Board board) {
+			byte[] cells = board.cells;
+			int[] offset = board.offsetAround;
+			// 按约束的行优先顺序排列变量, 使跨越同一位置的约束尽量少
+			if (position.length < varSize) {
+				position = new int[vars.length];
+				Arrays.fill(position, -1);
+			}
+			if (conVars.length < conCount) {
+				conVars = Arrays.copyOf(conVars, Math.max(16, conCount * 2));
+				conVarSize = Arrays.copyOf(conVarSize, conVars.length);
+			}
+			for (int c = 0; c < conCount; c++) {
+				int index = conCells[cons[c]];
+				if (conVars[c] == null) {
+					conVars[c] = new int[8];
+				}
+				int[] list = conVars[c];
+				int count = 0;
+				for (int i = 0; i < offset.length; i++) {
+					int around = index + offset[i];
+					if (Board.stat(cells[around]) == Core.STAT_COVER) {
+						int id = cellId[around];
+						if (position[id] < 0) {
+							position[id] = size;
+							addId(id);
+						}
+						list[count++] = position[id];
+					}
+				}
+				conVarSize[c] = count;
+				Arrays.sort(list, 0, count);
+			}
+			int n = size;
+			for (int i = 0; i < n; i++) {
+				position[ids[i]] = -1;
+			}
+
+			// 每个变量所属的约束, 以及该约束在此变量之后还剩几个变量 (按变量平铺, 先计数再填入)
+			varConStart = ensure(varConStart, n + 1);
+			Arrays.fill(varConStart, 0, n + 1, 0);
+			int entries = 0;
+			for (int c = 0; c < conCount; c++) {
+				for (int j = 0; j < conVarSize[c]; j++) {
+					varConStart[conVars[c][j] + 1]++;
+				}
+				entries += conVarSize[c];
+			}
+			for (int v = 0; v < n; v++) {
+				varConStart[v + 1] += varConStart[v];
+			}
+			varConList = ensure(varConList, entries);
+			varConRemain = ensure(varConRemain, entries);
+			for (int c = 0; c < conCount; c++) {
+				for (int j = 0; j < conVarSize[c]; j++) {
+					int t = varConStart[conVars[c][j]]++;
+					varConList[t] = c;
+					varConRemain[t] = conVarSize[c] - j - 1;
+				}
+			}
+			for (int v = n; v > 0; v--) {
+				varConStart[v] = varConStart[v - 1];
+			}
+			varConStart[0] = 0;
+
+			// 跨越位置 i 的约束 (首个变量 < i ≤ 最后一个变量), 作为位置 i 的状态
+			activeStart = ensure(activeStart, n + 2);
+			int activeSize = 0;
+			for (int i = 0; i <= n; i++) {
+				activeStart[i] = activeSize;
+				for (int c = 0; c < conCount; c++) {
+					if (conVars[c][0] < i && i <= conVars[c][conVarSize[c] - 1]) {
+						activeList = ensure(activeList, activeSize + 1);
+						activeList[activeSize++] = c;
+					}
+				}
+			}
+			activeStart[n + 1] = activeSize;
+
+			// 正向: 逐层展开节点, 每层的节点编号连续 (levelStart)
+			int width = n + 2;
+			residual = ensure(residual, conCount);
+			levelStart = ensure(levelStart, n + 2);
+			nodeSize = 0;
+			keySize = 0;
+			newNode(0, 1, width);
+			dist[0] = 1;
+			levelStart[0] = 0;
+			levelStart[1] = 1;
+			for (int i = 0; i < n; i++) {
+				checkCancelled();
+				int from = levelStart[i];
+				int to = levelStart[i + 1];
+				int keyFrom = activeStart[i + 1];
+				int keyLength = activeStart[i + 2] - keyFrom;
+
+				// 下一层节点的散列表 (容量为2的幂, 不小于子节点数上限的两倍)
+				int capacity = Integer.highestOneBit(Math.max(8, (to - from) * 4 - 1)) << 1;
+				int shift = 32 - Integer.numberOfTrailingZeros(capacity);
+				table = ensure(table, capacity);
+				Arrays.fill(table, 0, capacity, -1);
+
+				for (int node = from; node < to; node++) {
+					// 还原当前节点的剩余雷数 (新开始的约束取初始值)
+					int key = nodeKey[node];
+					for (int j = activeStart[i]; j < activeStart[i + 1]; j++) {
+						residual[activeList[j]] = keys[key++];
+					}
+					for (int t = varConStart[i]; t < varConStart[i + 1]; t++) {
+						int c = varConList[t];
+						if (conVars[c][0] == i) {
+							residual[c] = (byte) conNeeds[cons[c]];
+						}
+					}
+
+					for (int x = 0; x <= 1; x++) {
+						// 检查: 剩余雷数不能为负, 也不能超过剩余的变量数
+						boolean isValid = true;
+						for (int t = varConStart[i]; t < varConStart[i + 1] && isValid; t++) {
+							int r = residual[varConList[t]] - x;
+							isValid = r >= 0 && r <= varConRemain[t];
+						}
+						if (!isValid) {
+							continue;
+						}
+
+						// 子节点的键先写在 keys 的末尾, 已有相同的键时不保留
+						keys = ensure(keys, keySize + keyLength);
+						int hash = 1;
+						for (int j = 0; j < keyLength; j++) {
+							int c = activeList[keyFrom + j];
+							byte value = (byte) (residual[c] - (containsVar(i, c) ? x : 0));
+							keys[keySize + j] = value;
+							hash = 31 * hash + value;
+						}
+						int slot = (hash * 0x9E3779B9) >>> shift;
+						int child;
+						while ((child = table[slot]) >= 0 && (nodeHash[child] != hash || !sameKey(nodeKey[child], keySize, keyLength))) {
+							slot = (slot + 1) & (capacity - 1);
+						}
+						if (child < 0) {
+							child = newNode(keySize, hash, width);
+							keySize += keyLength;
+							table[slot] = child;
+						}
+
+						int parentBase = node * width;
+						int childBase = child * width;
+						for (int k = 0; k <= i; k++) {
+							dist[childBase + k + x] += dist[parentBase + k];
+						}
+						if (x == 0) {
+							next0[node] = child;
+						} else {
+							next1[node] = child;
+						}
+					}
+				}
+				levelStart[i + 2] = nodeSize;
+			}
+
+			// 反向: 从每个节点出发到达终点的雷数分布 (第 i 层节点的反向分布在其正向分布之后, 共 n - i + 1 个)
+			for (int node = levelStart[n]; node < levelStart[n + 1]; node++) {
+				dist[node * width + n + 1] = 1;
+			}
+			for (int i = n - 1; i >= 0; i--) {
+				checkCancelled();
+				for (int node = levelStart[i]; node < levelStart[i + 1]; node++) {
+					int backward = node * width + i + 1;
+					if (next0[node] >= 0) {
+						int from = next0[node] * width + i + 2;
+						for (int k = 0; k < n - i; k++) {
+							dist[backward + k] += dist[from + k];
+						}
+					}
+					if (next1[node] >= 0) {
+						int from = next1[node] * width + i + 2;
+						for (int k = 0; k < n - i; k++) {
+							dist[backward + k + 1] += dist[from + k];
+						}
+					}
+				}
+			}
+
+			// 根节点的反向分布即分量的雷数分布
+			total = ensure(total, n + 1);
+			System.arraycopy(dist, 1, total, 0, n + 1);
+			double scale = 0;
+			for (int k = 0; k <= n; k++) {
+				scale = Math.max(scale, total[k]);
+			}
+			scale = scale > 0 ? 1 / scale : 0;
+			for (int k = 0; k <= n; k++) {
+				total[k] *= scale;
+			}
+
+			// 每个变量为地雷的解: 到达节点的分布 × 选择地雷 × 从子节点出发的分布
+			if (mines.length < n) {
+				mines = Arrays.copyOf(mines, Math.max(8, n * 2));
+			}
+			for (int i = 0; i < n; i++) {
+				mines[i] = ensure(mines[i], n + 1);
+				Arrays.fill(mines[i], 0, n + 1, 0);
+			}
+			for (int i = 0; i < n; i++) {
+				for (int node = levelStart[i]; node < levelStart[i + 1]; node++) {
+					if (next1[node] < 0) {
+						continue;
+					}
+					int forward = node * width; // 共 i + 1 个
+					int backward = next1[node] * width + i + 2; // 共 n - i 个
+					for (int a = 0; a <= i; a++) {
+						if (dist[forward + a] != 0) {
+							for (int b = 0; b < n - i; b++) {
+								mines[i][a + b + 1] += dist[forward + a] * dist[backward + b] * scale;
+							}
+						}
+					}
+				}
+			}
+		}
+
+		/**
+		 * 约束 c 是否包含第 i 个变量
+		 */
+		private boolean containsVar(int i, int c) {
+			for (int t = varConStart[i]; t < varConStart[i + 1]; t++) {
+				if (varConList[t] == c) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+	}
+
+}
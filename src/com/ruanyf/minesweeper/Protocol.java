@@ -0,0 +1,350 @@
+package com.ruanyf.minesweeper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * 供程序 (机器人、脚本) 操作的文本协议
+ * <p>
+ * 每行可以包含多条命令，以 ';' 分隔；行列索引从0起算：
+ * <ul>
+ * <li>{@code new rows cols mines [seed]}：开始新的一局 (第一次翻开必定安全)，应答 {@code ok new seed}</li>
+ * <li>{@code open row col} (或 {@code o})：翻开</li>
+ * <li>{@code flag row col} (或 {@code f})：标记 / 取消标记</li>
+ * <li>{@code chord row col} (或 {@code c})：快速排雷</li>
+ * <li>{@code quit} (或 {@code q})：结束</li>
+ * </ul>
+ * 每条命令应答一行。操作的应答只包含状态改变的格子：
+ * {@code ok play|win|lose n row col v ...}，其中 v 为 0~8、M (地雷)、F (标记) 或 # (取消标记)；
+ * 出错时应答 {@code err 原因}。
+ * <p>
+ * 输入与输出都在字节缓冲区中直接解析和拼接，一次读入或写出一整块。
+ *
+ * @author Yaofeng Ruan
+ */
+public class Protocol {
+
+	private final Core core;
+	private boolean isStarted;
+
+	// 输入行与解析位置
+	private byte[] line;
+	private int pos, end;
+
+	// 输出缓冲区
+	private byte[] output = new byte[1 << 16];
+	private int outputSize;
+
+	/**
+	 * 创建绑定到指定核心的协议处理器
+	 *
+	 * @param core
+	 *            游戏核心 (若已初始化则可以直接操作, 否则需先发送 new 命令)
+	 */
+	public Protocol(Core core) {
+		this.core = core;
+		this.isStarted = core.getBoard() != null;
+	}
+
+	/**
+	 * 从输入流逐行读取并执行命令, 直至输入结束或收到 quit
+	 * (输入暂时没有更多数据时才写出应答)
+	 *
+	 * @param in
+	 *            输入流
+	 * @param out
+	 *            输出流
+	 */
+	public void run(InputStream in, OutputStream out) throws IOException {
+		byte[] buffer = new byte[1 << 16];
+		int size = 0;
+		boolean isRunning = true;
+
+		while (isRunning) {
+			if (size == buffer.length) {
+				buffer = Arrays.copyOf(buffer, buffer.length * 2); // 超长的行
+			}
+			int n = in.read(buffer, size, buffer.length - size);
+			if (n < 0) {
+				if (size > 0) {
+					execute(buffer, 0, size); // 最后一行没有换行符
+				}
+				break;
+			}
+			size += n;
+
+			// 执行所有完整的行
+			int start = 0;
+			for (int i = 0; i < size && isRunning; i++) {
+				if (buffer[i] == '\n') {
+					isRunning = execute(buffer, start, i);
+					start = i + 1;
+				}
+			}
+			System.arraycopy(buffer, start, buffer, 0, size - start);
+			size -= start;
+
+			if (!isRunning || in.available() == 0) {
+				flush(out);
+			}
+		}
+		flush(out);
+	}
+
+	/**
+	 * 执行一行命令, 应答追加到输出缓冲区
+	 *
+	 * @param bytes
+	 *            输入
+	 * @param from
+	 *            行的起始位置
+	 * @param to
+	 *            行的结束位置 (不含)
+	 * @return 若收到 quit 则返回false
+	 */
+	public boolean execute(byte[] bytes, int from, int to) {
+		line = bytes;
+		pos = from;
+		end = to;
+
+		while (true) {
+			skipSpaces();
+			if (pos >= end) {
+				return true;
+			}
+			if (line[pos] == ';') {
+				pos++;
+				continue;
+			}
+			if (!command()) {
+				return false;
+			}
+			// 跳过本条命令多余的内容
+			while (pos < end && line[pos] != ';') {
+				pos++;
+			}
+		}
+	}
+
+	/**
+	 * 执行一条命令
+	 *
+	 * @return 若为 quit 则返回false
+	 */
+	private boolean command() {
+		int wordStart = pos;
+		while (pos < end && line[pos] > ' ' && line[pos] != ';') {
+			pos++;
+		}
+		int length = pos - wordStart;
+		byte c = line[wordStart];
+
+		if (is(wordStart, length, "new")) {
+			commandNew();
+		} else if (is(wordStart, length, "quit") || (length == 1 && c == 'q')) {
+			return false;
+		} else if (is(wordStart, length, "open") || (length == 1 && c == 'o')) {
+			move(Core.STAT_COVER);
+		} else if (is(wordStart, length, "flag") || (length == 1 && c == 'f')) {
+			move(Core.STAT_FLAG);
+		} else if (is(wordStart, length, "chord") || (length == 1 && c == 'c')) {
+			move(Core.STAT_OPEN);
+		} else {
+			error("unknown command");
+		}
+		return true;
+	}
+
+	/**
+	 * new rows cols mines [seed]
+	 */
+	private void commandNew() {
+		long rowSize = nextLong();
+		long colSize = nextLong();
+		long mineSize = nextLong();
+		if (rowSize <= 0 || colSize <= 0 || mineSize < 0 || rowSize > Integer.MAX_VALUE || colSize > Integer.MAX_VALUE || mineSize > Integer.MAX_VALUE) {
+			error("usage: new rows cols mines [seed]");
+			return;
+		}
+		skipSpaces();
+		boolean hasSeed = pos < end && line[pos] != ';';
+		long seed = hasSeed ? nextLong() : 0;
+		if (seed == Long.MIN_VALUE) {
+			error("usage: new rows cols mines [seed]");
+			return;
+		}
+		try {
+			if (hasSeed) {
+				core.initLazy((int) rowSize, (int) colSize, (int) mineSize, seed);
+			} else {
+				core.initLazy((int) rowSize, (int) colSize, (int) mineSize);
+			}
+		} catch (IllegalArgumentException e) {
+			isStarted = false;
+			error(e.getMessage());
+			return;
+		}
+		isStarted = true;
+		putText("ok new ");
+		putLong(core.seed);
+		put('\n');
+	}
+
+	/**
+	 * 对格子进行操作并应答状态改变的格子
+	 *
+	 * @param kind
+	 *            STAT_COVER: 翻开, STAT_FLAG: 标记, STAT_OPEN: 快速排雷
+	 */
+	private void move(int kind) {
+		long row = nextLong();
+		long col = nextLong();
+		if (!isStarted) {
+			error("no game");
+			return;
+		} else if (row < 0 || col < 0 || row >= core.getRowSize() || col >= core.getColSize()) {
+			error("out of bound");
+			return;
+		} else if (core.isGameover || core.isWin) {
+			error("game over");
+			return;
+		}
+
+		if (kind == Core.STAT_COVER) {
+			core.open((int) row, (int) col);
+		} else if (kind == Core.STAT_FLAG) {
+			core.flag((int) row, (int) col);
+		} else {
+			core.sweep((int) row, (int) col);
+		}
+
+		putText(core.isGameover ? "ok lose " : core.isWin ? "ok win " : "ok play ");
+		int size = core.getChangedSize();
+		putLong(size);
+		for (int i = 0; i < size; i++) {
+			int r = core.getChangedRow(i);
+			int c = core.getChangedCol(i);
+			put(' ');
+			putLong(r);
+			put(' ');
+			putLong(c);
+			put(' ');
+			int status = core.getStatus(r, c);
+			put(status == Core.STAT_OPEN ? core.getGrid(r, c) : status == Core.STAT_FLAG ? CUI.FLAGGED : CUI.COVERED);
+		}
+		put('\n');
+	}
+
+	private void error(String message) {
+		putText("err ");
+		putText(message);
+		put('\n');
+	}
+
+	/**
+	 * 判断 [from, from + length) 是否为指定的单词
+	 */
+	private boolean is(int from, int length, String word) {
+		if (length != word.length()) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (line[from + i] != word.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void skipSpaces() {
+		while (pos < end && (line[pos] == ' ' || line[pos] == '\t' || line[pos] == '\r')) {
+			pos++;
+		}
+	}
+
+	/**
+	 * 读取下一个整数 (缺失或无法识别时返回 Long.MIN_VALUE)
+	 */
+	private long nextLong() {
+		skipSpaces();
+		boolean isNegative = pos < end && line[pos] == '-';
+		if (isNegative) {
+			pos++;
+		}
+		int start = pos;
+		long value = 0;
+		while (pos < end && line[pos] >= '0' && line[pos] <= '9') {
+			value = value * 10 + (line[pos++] - '0');
+		}
+		if (pos == start || pos - start > 19) {
+			return Long.MIN_VALUE;
+		}
+		return isNegative ? -value : value;
+	}
+
+	private void putText(String text) {
+		for (int i = 0; i < text.length(); i++) {
+			put(text.charAt(i));
+		}
+	}
+
+	private void putLong(long value) {
+		if (value < 0) {
+			put('-');
+			value = -value;
+		}
+		ensure(20);
+		int length = 1;
+		for (long v = value; v >= 10; v /= 10) {
+			length++;
+		}
+		for (int i = outputSize + length - 1; i >= outputSize; i--) {
+			output[i] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		outputSize += length;
+	}
+
+	private void put(char c) {
+		ensure(1);
+		output[outputSize++] = (byte) c;
+	}
+
+	private void ensure(int length) {
+		if (outputSize + length > output.length) {
+			output = Arrays.copyOf(output, Math.max(output.length * 2, outputSize + length));
+		}
+	}
+
+	/**
+	 * 获取输出缓冲区 (有效长度见 {@link #getOutputSize()})
+	 */
+	public byte[] getOutput() {
+		return output;
+	}
+
+	public int getOutputSize() {
+		return outputSize;
+	}
+
+	/**
+	 * 清空输出缓冲区
+	 */
+	public void clearOutput() {
+		outputSize = 0;
+	}
+
+	/**
+	 * 写出并清空输出缓冲区
+	 */
+	public void flush(OutputStream out) throws IOException {
+		if (outputSize > 0) {
+			out.write(output, 0, outputSize);
+			outputSize = 0;
+		}
+		out.flush();
+	}
+
+}
@@ -0,0 +1,265 @@
+package com.ruanyf.minesweeper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * 对局记录 (紧凑的二进制格式)
+ * <p>
+ * 棋盘完全由尺寸、种子与生成方式决定，因此只需记录这些参数与每一步操作：
+ * <ul>
+ * <li>头部: "MSR"、版本、生成方式 (1: 延迟生成)、行数、列数、雷数、种子 (ZigZag)</li>
+ * <li>每一步: (格子序号 &lt;&lt; 2 | 操作)，格子序号为 row * colSize + col</li>
+ * <li>结尾: OP_END、结果 (0: 进行中, 1: 胜利, 2: 失败)、待翻开格子数、标记数量 (用于回放时校验)</li>
+ * </ul>
+ * 所有整数均为变长编码 (每字节7位)。将记录赋给 {@link Core#recording} 后，
+ * 核心每次初始化时自动写入头部，每一步操作只在字节数组末尾追加几个字节。
+ *
+ * @author Yaofeng Ruan
+ */
+public class Recording {
+
+	public static final int VERSION = 1;
+
+	// 操作
+	public static final int OP_OPEN = 0;
+	public static final int OP_FLAG = 1;
+	public static final int OP_SWEEP = 2;
+	public static final int OP_END = 3;
+
+	// 结果
+	public static final int RESULT_PLAYING = 0;
+	public static final int RESULT_WIN = 1;
+	public static final int RESULT_LOSE = 2;
+
+	// 记录文件的扩展名与默认保存目录
+	public static final String EXTENSION = ".msr";
+	public static final String PATH_DEFAULT_DIR = "recordings";
+
+	private static final byte[] MAGIC = { 'M', 'S', 'R' };
+
+	private Core core;
+	private int colSize;
+	private byte[] data = new byte[256];
+	private int size;
+	private int moveSize;
+
+	/**
+	 * 开始记录新的一局 (由核心在初始化时调用)
+	 *
+	 * @param core
+	 *            刚初始化的核心 (尚未进行任何操作)
+	 */
+	public void start(Core core) {
+		this.core = core;
+		this.colSize = core.getColSize();
+		size = 0;
+		moveSize = 0;
+
+		for (byte b : MAGIC) {
+			put(b);
+		}
+		putVarLong(VERSION);
+		putVarLong(core.isGenerated() ? 0 : 1);
+		putVarLong(core.getRowSize());
+		putVarLong(core.getColSize());
+		putVarLong(core.getMineSize());
+		putVarLong((core.seed << 1) ^ (core.seed >> 63));
+	}
+
+	/**
+	 * 记录一步操作 (由核心调用)
+	 *
+	 * @param op
+	 *            OP_OPEN / OP_FLAG / OP_SWEEP
+	 */
+	void add(int op, int row, int col) {
+		if (core != null) {
+			putVarLong(((long) row * colSize + col) << 2 | op);
+			moveSize++;
+		}
+	}
+
+	/**
+	 * 获取已记录的操作数
+	 */
+	public int getMoveSize() {
+		return moveSize;
+	}
+
+	/**
+	 * 获取记录的种子
+	 */
+	public long getSeed() {
+		return core == null ? 0 : core.seed;
+	}
+
+	/**
+	 * 导出记录 (附加核心当前的结果, 用于回放时校验)
+	 *
+	 * @return 记录数据, 尚未开始记录时返回null
+	 */
+	public byte[] toByteArray() {
+		if (core == null) {
+			return null;
+		}
+		int length = size;
+		putVarLong(OP_END);
+		putVarLong(core.isWin ? RESULT_WIN : core.isGameover ? RESULT_LOSE : RESULT_PLAYING);
+		putVarLong(core.remain);
+		putVarLong(core.flags);
+		byte[] result = Arrays.copyOf(data, size);
+		size = length;
+		return result;
+	}
+
+	/**
+	 * 将记录保存到指定目录 (文件名由时间与种子组成)
+	 *
+	 * @param dir
+	 *            目录 (不存在时创建)
+	 * @return 保存的文件
+	 */
+	public File save(File dir) throws IOException {
+		byte[] bytes = toByteArray();
+		if (bytes == null) {
+			return null;
+		}
+		Files.createDirectories(dir.toPath());
+		File file = new File(dir, System.currentTimeMillis() + "-" + Long.toHexString(core.seed) + EXTENSION);
+		Files.write(file.toPath(), bytes);
+		return file;
+	}
+
+	private void putVarLong(long value) {
+		while ((value & ~0x7FL) != 0) {
+			put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		put((byte) value);
+	}
+
+	private void put(byte b) {
+		if (size == data.length) {
+			data = Arrays.copyOf(data, data.length * 2);
+		}
+		data[size++] = b;
+	}
+
+	/**
+	 * 逐步读取记录并在核心上重现
+	 */
+	public static class Reader {
+
+		public final boolean isLazy;
+		public final int rowSize, colSize, mineSize;
+		public final long seed;
+
+		private final byte[] data;
+		private int pos;
+
+		// 结尾记录的结果 (没有结尾时 result 为 -1)
+		private int result = -1;
+		private int remain, flags;
+
+		/**
+		 * 读取记录的头部
+		 *
+		 * @param data
+		 *            记录数据
+		 * @throws IllegalArgumentException
+		 *             不是有效的记录
+		 */
+		public Reader(byte[] data) {
+			this.data = data;
+			for (byte b : MAGIC) {
+				if (pos >= data.length || data[pos++] != b) {
+					throw new IllegalArgumentException("Not a recording");
+				}
+			}
+			int version = (int) nextVarLong();
+			if (version != VERSION) {
+				throw new IllegalArgumentException("Unsupported recording version: " + version);
+			}
+			isLazy = nextVarLong() == 1;
+			rowSize = (int) nextVarLong();
+			colSize = (int) nextVarLong();
+			mineSize = (int) nextVarLong();
+			long zigzag = nextVarLong();
+			seed = (zigzag >>> 1) ^ -(zigzag & 1);
+		}
+
+		/**
+		 * 按记录的参数初始化核心
+		 */
+		public void init(Core core) {
+			if (isLazy) {
+				core.initLazy(rowSize, colSize, mineSize, seed);
+			} else {
+				core.init(rowSize, colSize, mineSize, seed);
+			}
+		}
+
+		/**
+		 * 在核心上执行下一步操作
+		 *
+		 * @return 若执行了操作则返回true, 记录已结束时返回false
+		 */
+		public boolean next(Core core) {
+			if (pos >= data.length) {
+				return false;
+			}
+			long value = nextVarLong();
+			int op = (int) (value & 3);
+			if (op == OP_END) {
+				result = (int) nextVarLong();
+				remain = (int) nextVarLong();
+				flags = (int) nextVarLong();
+				pos = data.length;
+				return false;
+			}
+
+			long index = value >>> 2;
+			int row = (int) (index / colSize);
+			int col = (int) (index % colSize);
+			if (op == OP_OPEN) {
+				core.open(row, col);
+			} else if (op == OP_FLAG) {
+				core.flag(row, col);
+			} else {
+				core.sweep(row, col);
+			}
+			return true;
+		}
+
+		/**
+		 * 判断核心的结果是否与记录的结果一致 (读完记录之后调用, 记录没有结尾时总是一致)
+		 */
+		public boolean matches(Core core) {
+			if (result < 0) {
+				return true;
+			}
+			int actual = core.isWin ? RESULT_WIN : core.isGameover ? RESULT_LOSE : RESULT_PLAYING;
+			return actual == result && core.remain == remain && core.flags == flags;
+		}
+
+		private long nextVarLong() {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				if (pos >= data.length) {
+					throw new IllegalArgumentException("Truncated recording");
+				}
+				byte b = data[pos++];
+				value |= (long) (b & 0x7F) << shift;
+				if (b >= 0) {
+					return value;
+				}
+			}
+			throw new IllegalArgumentException("Malformed varint");
+		}
+
+	}
+
+}
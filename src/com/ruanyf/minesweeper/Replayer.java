@@ -0,0 +1,151 @@
+package com.ruanyf.minesweeper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 无界面回放对局记录 (回归测试)
+ * <p>
+ * 多个工作线程并行回放，每个线程复用自己的核心；每份记录都全速回放到结尾，
+ * 再与记录中的结果比较。
+ *
+ * @author Yaofeng Ruan
+ */
+public class Replayer {
+
+	/**
+	 * 在核心上全速回放一份记录
+	 *
+	 * @param data
+	 *            记录数据
+	 * @param core
+	 *            游戏核心 (回放时不会再被记录)
+	 * @return 若回放的结果与记录一致则返回true
+	 */
+	public static boolean replay(byte[] data, Core core) {
+		Recording recording = core.recording;
+		core.recording = null;
+		try {
+			Recording.Reader reader = new Recording.Reader(data);
+			reader.init(core);
+			while (reader.next(core)) {
+			}
+			return reader.matches(core);
+		} finally {
+			core.recording = recording;
+		}
+	}
+
+	/**
+	 * 并行回放多份记录
+	 *
+	 * @param recordings
+	 *            记录数据
+	 * @param threads
+	 *            工作线程数
+	 * @return 与记录不一致 (或无法读取) 的记录序号
+	 */
+	public static List<Integer> check(final List<byte[]> recordings, int threads) throws InterruptedException {
+		final AtomicInteger next = new AtomicInteger();
+		final List<Integer> failed = new ArrayList<>();
+
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			workers[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					Core core = new Core();
+					core.parallelThreshold = Integer.MAX_VALUE; // 已在多线程中运行, 单局无需再并行
+
+					int i;
+					while ((i = next.getAndIncrement()) < recordings.size()) {
+						boolean isPassed;
+						try {
+							isPassed = replay(recordings.get(i), core);
+						} catch (RuntimeException e) {
+							isPassed = false;
+						}
+						if (!isPassed) {
+							synchronized (failed) {
+								failed.add(i);
+							}
+						}
+					}
+				}
+			}, "replayer-" + t);
+		}
+
+		for (Thread worker : workers) {
+			worker.start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		return failed;
+	}
+
+	/**
+	 * 回放目录 (或文件) 中的所有记录并输出结果
+	 *
+	 * @param args
+	 *            目录或文件... [-threads 线程数] [-metrics] (结束时输出运行指标)
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int threads = Runtime.getRuntime().availableProcessors();
+		List<File> files = new ArrayList<>();
+		for (int i = 0; i < args.length; i++) {
+			if ("-threads".equals(args[i]) && i + 1 < args.length) {
+				threads = Integer.parseInt(args[++i]);
+			} else if ("-metrics".equals(args[i])) {
+				Metrics.enable();
+			} else {
+				collect(new File(args[i]), files);
+			}
+		}
+		if (files.isEmpty()) {
+			System.out.println("Usage: Replayer dir|file... [-threads n] [-metrics]");
+			return;
+		}
+
+		Metrics.printOnExit(System.err);
+
+		List<byte[]> recordings = new ArrayList<>(files.size());
+		for (File file : files) {
+			recordings.add(Files.readAllBytes(file.toPath()));
+		}
+
+		long begin = System.nanoTime();
+		List<Integer> failed = check(recordings, threads);
+		double seconds = (System.nanoTime() - begin) / 1e9;
+
+		for (int i : failed) {
+			System.out.println("FAILED " + files.get(i));
+		}
+		System.out.printf("%d recordings, %d failed, %.3f s, %.1f recordings/s%n",
+				recordings.size(), failed.size(), seconds, recordings.size() / seconds);
+		if (!failed.isEmpty()) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * 收集目录下的所有记录文件
+	 */
+	private static void collect(File file, List<File> files) {
+		if (file.isDirectory()) {
+			File[] children = file.listFiles();
+			if (children != null) {
+				for (File child : children) {
+					collect(child, files);
+				}
+			}
+		} else if (file.getName().endsWith(Recording.EXTENSION)) {
+			files.add(file);
+		}
+	}
+
+}
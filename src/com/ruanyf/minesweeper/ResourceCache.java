@@ -0,0 +1,267 @@
+package com.ruanyf.minesweeper;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+import javax.swing.BorderFactory;
+import javax.swing.UIManager;
+import javax.swing.border.BevelBorder;
+import javax.swing.border.Border;
+
+/**
+ * 界面资源的共享缓存 (图片、字体、边框与格子图集)
+ * <p>
+ * 图片优先从类路径加载 (打包成 jar 后同样可用)，找不到时再按相对路径从文件加载，每张图片只加载一次。
+ * 字体与边框都是不可变对象，按参数缓存后共享。格子图集按 (尺寸, 缩放比例, 主题色) 缓存，
+ * 最近最少使用的图集在数量超过上限时被淘汰 (缩放或改变窗口时不会无限增长)。
+ * <p>
+ * 所有方法都是线程安全的。
+ *
+ * @author Yaofeng Ruan
+ */
+public final class ResourceCache {
+
+	// 最多缓存的格子图集数量
+	public static final int MAX_ATLASES = 16;
+
+	private static final Map<String, BufferedImage> images = new HashMap<>();
+	private static final Map<String, Font> fonts = new HashMap<>();
+	private static final Map<String, Border> borders = new HashMap<>();
+
+	// 按访问顺序排列, 超过上限时淘汰最久未使用的图集 (以自身为锁, 绘制图集时不持有任何锁)
+	@SuppressWarnings("serial")
+	private static final Map<String, Atlas> atlases = new LinkedHashMap<String, Atlas>(MAX_ATLASES * 2, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Atlas> eldest) {
+			return size() > MAX_ATLASES;
+		}
+	};
+
+	private ResourceCache() {
+	}
+
+	/**
+	 * 格子图集: 所有格子外观按同一尺寸横向排列在一张图片中
+	 */
+	public static class Atlas {
+
+		public final int tileSize; // 格子尺寸 (逻辑像素)
+		private final int pixelSize; // 格子在图片中的尺寸 (设备像素)
+		private final BufferedImage image;
+
+		Atlas(int tileSize, int pixelSize, BufferedImage image) {
+			this.tileSize = tileSize;
+			this.pixelSize = pixelSize;
+			this.image = image;
+		}
+
+		/**
+		 * 在指定位置绘制格子 (不分配新对象)
+		 *
+		 * @param g
+		 *            绘图对象
+		 * @param glyph
+		 *            格子外观 (BoardView.GLYPH_*)
+		 * @param x
+		 *            横坐标
+		 * @param y
+		 *            纵坐标
+		 */
+		public void draw(Graphics g, int glyph, int x, int y) {
+			int sx = glyph * pixelSize;
+			g.drawImage(image, x, y, x + tileSize, y + tileSize, sx, 0, sx + pixelSize, pixelSize, null);
+		}
+
+	}
+
+	/**
+	 * 获取图片 (首次调用时加载)
+	 *
+	 * @param path
+	 *            资源路径 (如 res/img/bomb.png)
+	 * @return 图片, 加载失败时返回null
+	 */
+	public static synchronized BufferedImage getImage(String path) {
+		if (images.containsKey(path)) {
+			return images.get(path);
+		}
+
+		BufferedImage image = null;
+		try {
+			URL url = ResourceCache.class.getResource("/" + path);
+			if (url != null) {
+				image = ImageIO.read(url);
+			} else if (new File(path).isFile()) {
+				image = ImageIO.read(new File(path));
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		images.put(path, image);
+		return image;
+	}
+
+	/**
+	 * 获取字体
+	 *
+	 * @param style
+	 *            字体样式 (Font.PLAIN / BOLD / ITALIC)
+	 * @param size
+	 *            字号
+	 */
+	public static synchronized Font getFont(int style, int size) {
+		String key = style + "/" + size;
+		Font font = fonts.get(key);
+		if (font == null) {
+			font = new Font(null, style, size);
+			fonts.put(key, font);
+		}
+		return font;
+	}
+
+	/**
+	 * 获取以指定颜色为底色的柔和斜面边框
+	 *
+	 * @param type
+	 *            BevelBorder.RAISED / LOWERED
+	 * @param base
+	 *            底色 (高光与阴影由底色推算)
+	 */
+	public static synchronized Border getBevelBorder(int type, Color base) {
+		String key = type + "/" + base.getRGB();
+		Border border = borders.get(key);
+		if (border == null) {
+			border = BorderFactory.createSoftBevelBorder(type, base.brighter(), base.darker());
+			borders.put(key, border);
+		}
+		return border;
+	}
+
+	/**
+	 * 获取界面的底色 (读取 Swing 的外观设置, 需在 EDT 上调用)
+	 */
+	public static Color getPanelBackground() {
+		Color background = UIManager.getColor("Panel.background");
+		return background != null ? background : new Color(238, 238, 238);
+	}
+
+	/**
+	 * 获取格子图集 (不存在时绘制, 需在 EDT 上调用)
+	 *
+	 * @param tileSize
+	 *            格子尺寸 (逻辑像素)
+	 * @param scale
+	 *            显示器的缩放比例 (高分屏上按设备像素绘制, 保持清晰)
+	 * @param themeColor
+	 *            砖块颜色
+	 * @param themeFocusColor
+	 *            鼠标所在砖块的颜色
+	 */
+	public static Atlas getAtlas(int tileSize, double scale, Color themeColor, Color themeFocusColor) {
+		return getAtlas(tileSize, scale, getPanelBackground(), themeColor, themeFocusColor);
+	}
+
+	/**
+	 * 获取格子图集 (不存在时绘制, 可在任意线程调用)
+	 * <p>
+	 * 绘制 (首次约半秒) 在锁外进行，期间其他线程获取字体、图片等资源不会被阻塞；
+	 * 多个线程同时绘制同一图集时以先放入缓存的为准。
+	 *
+	 * @param background
+	 *            界面的底色 (见 {@link #getPanelBackground()})
+	 */
+	public static Atlas getAtlas(int tileSize, double scale, Color background, Color themeColor, Color themeFocusColor) {
+		String key = tileSize + "/" + scale + "/" + background.getRGB() + "/" + themeColor.getRGB() + "/" + themeFocusColor.getRGB();
+		synchronized (atlases) {
+			Atlas atlas = atlases.get(key);
+			if (atlas != null) {
+				return atlas;
+			}
+		}
+
+		int pixelSize = (int) Math.ceil(tileSize * scale);
+		Atlas atlas = new Atlas(tileSize, pixelSize, renderAtlas(pixelSize, background, themeColor, themeFocusColor));
+		synchronized (atlases) {
+			Atlas existing = atlases.get(key);
+			if (existing != null) {
+				return existing;
+			}
+			atlases.put(key, atlas);
+		}
+		return atlas;
+	}
+
+	/**
+	 * 按指定尺寸绘制所有格子外观 (横向排列)
+	 */
+	private static BufferedImage renderAtlas(int size, Color background, Color themeColor, Color themeFocusColor) {
+		// 斜面边框的颜色由底色推算 (与 JLabel / JButton 默认的斜面边框一致)
+		Border lowered = getBevelBorder(BevelBorder.LOWERED, background);
+		Border raised = getBevelBorder(BevelBorder.RAISED, themeColor);
+		Border raisedFocus = getBevelBorder(BevelBorder.RAISED, themeFocusColor);
+		Border loweredDown = getBevelBorder(BevelBorder.LOWERED, themeColor);
+		Font font = getFont(Font.BOLD, size * 3 / 4);
+
+		BufferedImage mine = getImage(GUI.PATH_IMG_MINE);
+		BufferedImage flag = getImage(GUI.PATH_IMG_FLAG);
+		BufferedImage flagCorrect = getImage(GUI.PATH_IMG_FLAG_CORRECT);
+		BufferedImage flagWrong = getImage(GUI.PATH_IMG_FLAG_WRONG);
+
+		BufferedImage result = new BufferedImage(size * BoardView.GLYPH_SIZE, size, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = result.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+		g.setFont(font);
+		FontMetrics fm = g.getFontMetrics();
+
+		for (int i = 0; i < BoardView.GLYPH_SIZE; i++) {
+			int x = i * size;
+			boolean isOpen = i <= BoardView.GLYPH_DEAD;
+			boolean isFocus = i == BoardView.GLYPH_COVER_FOCUS || i == BoardView.GLYPH_FLAG_FOCUS;
+
+			g.setColor(i == BoardView.GLYPH_DEAD ? Color.RED : isOpen ? background : isFocus ? themeFocusColor : themeColor);
+			g.fillRect(x, 0, size, size);
+			Border border = isOpen ? lowered : isFocus ? raisedFocus : i == BoardView.GLYPH_COVER_DOWN ? loweredDown : raised;
+			border.paintBorder(null, g, x, 0, size, size);
+
+			if (i > 0 && i < 9) {
+				// 数字
+				g.setColor(GUI.COLORS_NUM[i - 1]);
+				String text = String.valueOf(i);
+				g.drawString(text, x + (size - fm.stringWidth(text)) / 2, (size - fm.getHeight()) / 2 + fm.getAscent());
+			} else if (i >= BoardView.GLYPH_MINE) {
+				// 图标
+				BufferedImage icon = null;
+				if (i == BoardView.GLYPH_FLAG || i == BoardView.GLYPH_FLAG_FOCUS) {
+					icon = flag;
+				} else if (i == BoardView.GLYPH_FLAG_CORRECT) {
+					icon = flagCorrect;
+				} else if (i == BoardView.GLYPH_FLAG_WRONG) {
+					icon = flagWrong;
+				} else if (i == BoardView.GLYPH_MINE || i == BoardView.GLYPH_DEAD || i == BoardView.GLYPH_COVER_MINE) {
+					icon = mine;
+				}
+				if (icon != null) {
+					int iconSize = size * 3 / 4;
+					int offset = (size - iconSize) / 2;
+					g.drawImage(icon, x + offset, offset, iconSize, iconSize, null);
+				}
+			}
+		}
+		g.dispose();
+		return result;
+	}
+
+}
@@ -0,0 +1,429 @@
+package com.ruanyf.minesweeper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 多局游戏服务器 (只监听本机回环地址)
+ * <p>
+ * 每个连接一个线程 (运行在 Java 21 及以上时使用虚拟线程, 否则使用普通线程池)，
+ * 收到第一条命令时为连接创建一局游戏 (会话)，协议与 {@link Protocol} 完全一致，另有两条服务器命令 (须单独成行)：
+ * <ul>
+ * <li>{@code session}：应答 {@code ok session id}</li>
+ * <li>{@code attach id}：断线重连时接回之前的会话，应答 {@code ok session id}</li>
+ * <li>{@code metrics}：导出运行指标 (见 {@link Metrics}, 每行一个)，最后一行为 {@code ok metrics}</li>
+ * </ul>
+ * 会话存放在并发哈希表中，各自持有一把锁，同一会话的命令串行执行，不同会话之间没有任何共享的锁。
+ * 一个会话同时只属于一个连接 (attach 会断开之前的连接)。断开的会话保留到空闲超时后才被清除 (可以重连)，
+ * 空闲超时的连接同样会被断开；quit 立即结束会话。
+ *
+ * @author Yaofeng Ruan
+ */
+public class Server {
+
+	public static final int DEFAULT_PORT = 7777;
+	public static final long DEFAULT_IDLE_MILLIS = 5 * 60 * 1000;
+
+	// 运行指标 (见 Metrics, 默认关闭)
+	private static final Metrics.Counter CONNECTIONS = Metrics.counter("server.connections");
+	private static final Metrics.Counter CONNECTIONS_EVICTED = Metrics.counter("server.connections.evicted");
+	private static final Metrics.Counter SESSIONS_CREATED = Metrics.counter("server.sessions.created");
+	private static final Metrics.Counter SESSIONS_EVICTED = Metrics.counter("server.sessions.evicted");
+	private static final Metrics.Histogram COMMAND_NANOS = Metrics.histogram("server.command.nanos");
+
+	/**
+	 * 一局游戏 (核心与协议处理器只在持有锁时访问)
+	 */
+	private static class Session {
+
+		final long id;
+		final Core core = new Core();
+		final Protocol protocol = new Protocol(core);
+		final ReentrantLock lock = new ReentrantLock();
+		volatile long lastUsed = System.currentTimeMillis();
+		volatile Socket socket; // 当前连接 (断开后为null)
+
+		Session(long id) {
+			this.id = id;
+			core.parallelThreshold = Integer.MAX_VALUE; // 已有大量并发会话, 单局无需再并行
+		}
+
+	}
+
+	private final int port;
+	private final long idleMillis;
+	private final ConcurrentHashMap<Long, Session> sessions = new ConcurrentHashMap<>();
+	private final AtomicLong nextId = new AtomicLong(1);
+
+	private ServerSocket serverSocket;
+	private ExecutorService connections;
+	private Thread acceptor, evictor;
+	private volatile boolean isRunning;
+
+	/**
+	 * 创建服务器
+	 *
+	 * @param port
+	 *            端口 (0 表示由系统分配)
+	 * @param idleMillis
+	 *            会话的空闲超时 (毫秒)
+	 */
+	public Server(int port, long idleMillis) {
+		this.port = port;
+		this.idleMillis = idleMillis;
+	}
+
+	/**
+	 * 开始监听 (在后台线程中接受连接, 立即返回)
+	 */
+	public void start() throws IOException {
+		serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+		connections = newThreadPerTaskExecutor();
+		isRunning = true;
+
+		acceptor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				accept();
+			}
+		}, "server-acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+
+		evictor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				while (isRunning) {
+					try {
+						Thread.sleep(Math.max(1, idleMillis / 4));
+					} catch (InterruptedException e) {
+						return;
+					}
+					evict(System.currentTimeMillis());
+				}
+			}
+		}, "server-evictor");
+		evictor.setDaemon(true);
+		evictor.start();
+	}
+
+	/**
+	 * 获取实际监听的端口
+	 */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * 获取当前的会话数量
+	 */
+	public int getSessionSize() {
+		return sessions.size();
+	}
+
+	/**
+	 * 停止服务器并断开所有连接
+	 */
+	public void stop() throws IOException {
+		isRunning = false;
+		serverSocket.close();
+		evictor.interrupt();
+		for (Session session : sessions.values()) {
+			close(session.socket);
+		}
+		sessions.clear();
+		connections.shutdownNow();
+	}
+
+	/**
+	 * 创建每个任务一个线程的执行器 (Java 21 及以上使用虚拟线程)
+	 */
+	static ExecutorService newThreadPerTaskExecutor() {
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+
+	private void accept() {
+		while (isRunning) {
+			final Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (IOException e) {
+				if (isRunning) {
+					e.printStackTrace();
+				}
+				return;
+			}
+			connections.execute(new Runnable() {
+				@Override
+				public void run() {
+					serve(socket);
+				}
+			});
+		}
+	}
+
+	/**
+	 * 清除空闲超时的会话 (正在执行命令的会话跳过)
+	 */
+	private void evict(long now) {
+		Iterator<Session> it = sessions.values().iterator();
+		while (it.hasNext()) {
+			Session session = it.next();
+			if (now - session.lastUsed > idleMillis && session.lock.tryLock()) {
+				try {
+					if (now - session.lastUsed > idleMillis) {
+						it.remove();
+						close(session.socket);
+						SESSIONS_EVICTED.increment();
+					}
+				} finally {
+					session.lock.unlock();
+				}
+			}
+		}
+	}
+
+	/**
+	 * 处理一个连接: 读入一块数据, 在会话的锁内执行其中所有完整的行并写出应答
+	 */
+	private void serve(Socket socket) {
+		Session session = null;
+		CONNECTIONS.increment();
+		try {
+			socket.setTcpNoDelay(true);
+			// 空闲超时内没有收到任何数据的连接断开 (会话保留, 由清除线程按会话的空闲时间清除)
+			socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, idleMillis));
+			InputStream in = socket.getInputStream();
+			OutputStream out = socket.getOutputStream();
+			byte[] buffer = new byte[1 << 12];
+			int size = 0;
+			boolean isOpen = true;
+
+			while (isOpen) {
+				if (size == buffer.length) {
+					buffer = Arrays.copyOf(buffer, buffer.length * 2); // 超长的行
+				}
+				int n = in.read(buffer, size, buffer.length - size);
+				if (n < 0) {
+					break;
+				}
+				size += n;
+
+				// 同一块中的多行命令只在最后一行之后写出应答
+				int last = size - 1;
+				while (last >= 0 && buffer[last] != '\n') {
+					last--;
+				}
+
+				int start = 0;
+				for (int i = 0; i < size && isOpen; i++) {
+					if (buffer[i] != '\n') {
+						continue;
+					}
+					int end = i;
+					int from = start;
+					start = i + 1;
+
+					// 服务器命令
+					if (isWord(buffer, from, end, "metrics")) {
+						if (session != null) {
+							flush(session, out);
+						}
+						write(out, Metrics.export() + "ok metrics\n");
+						continue;
+					}
+					long attachId = parseAttach(buffer, from, end);
+					if (attachId != 0 || isWord(buffer, from, end, "session")) {
+						if (session != null) {
+							flush(session, out); // 先写出之前的应答, 保持顺序
+						}
+						if (attachId > 0) {
+							Session attached = sessions.get(attachId);
+							if (attached == null) {
+								write(out, "err no session\n");
+								continue;
+							}
+							session = attached;
+						} else if (attachId < 0) {
+							write(out, "err usage: attach id\n");
+							continue;
+						} else if (session == null) {
+							session = newSession();
+						}
+						if (session.socket != socket) {
+							close(session.socket); // 接管会话, 断开之前的连接
+							session.socket = socket;
+						}
+						session.lastUsed = System.currentTimeMillis();
+						write(out, "ok session " + session.id + "\n");
+						continue;
+					}
+
+					if (session == null) {
+						session = newSession();
+						session.socket = socket;
+					}
+					session.lock.lock();
+					try {
+						long begin = Metrics.now();
+						isOpen = session.protocol.execute(buffer, from, end);
+						COMMAND_NANOS.recordSince(begin);
+						session.lastUsed = System.currentTimeMillis();
+						if (end == last || !isOpen) {
+							session.protocol.flush(out);
+						}
+					} finally {
+						session.lock.unlock();
+					}
+					if (!isOpen) {
+						sessions.remove(session.id, session);
+					}
+				}
+				System.arraycopy(buffer, start, buffer, 0, size - start);
+				size -= start;
+			}
+		} catch (SocketTimeoutException e) {
+			// 连接空闲超时
+			CONNECTIONS_EVICTED.increment();
+		} catch (IOException e) {
+			// 连接断开或会话被清除
+		} finally {
+			if (session != null && session.socket == socket) {
+				session.socket = null;
+			}
+			close(socket);
+		}
+	}
+
+	private static void flush(Session session, OutputStream out) throws IOException {
+		session.lock.lock();
+		try {
+			session.protocol.flush(out);
+		} finally {
+			session.lock.unlock();
+		}
+	}
+
+	private Session newSession() {
+		Session session = new Session(nextId.getAndIncrement());
+		sessions.put(session.id, session);
+		SESSIONS_CREATED.increment();
+		return session;
+	}
+
+	/**
+	 * 解析 attach 命令
+	 *
+	 * @return 会话编号, 不是 attach 命令时返回0, 编号无效时返回-1
+	 */
+	private static long parseAttach(byte[] line, int from, int to) {
+		while (from < to && line[from] == ' ') {
+			from++;
+		}
+		if (to - from < 6 || !isWord(line, from, from + 6, "attach")) {
+			return 0;
+		}
+		long id = 0;
+		int digits = 0;
+		for (int i = from + 6; i < to; i++) {
+			byte b = line[i];
+			if (b >= '0' && b <= '9' && digits < 18) {
+				id = id * 10 + (b - '0');
+				digits++;
+			} else if (b != ' ' && b != '\r' && b != '\t') {
+				return -1;
+			}
+		}
+		return digits == 0 ? -1 : id;
+	}
+
+	/**
+	 * 判断 [from, to) 去掉首尾空白后是否为指定的单词
+	 */
+	private static boolean isWord(byte[] line, int from, int to, String word) {
+		while (from < to && line[from] == ' ') {
+			from++;
+		}
+		while (to > from && (line[to - 1] == ' ' || line[to - 1] == '\r')) {
+			to--;
+		}
+		if (to - from != word.length()) {
+			return false;
+		}
+		for (int i = 0; i < word.length(); i++) {
+			if (line[from + i] != word.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void write(OutputStream out, String text) throws IOException {
+		out.write(text.getBytes("US-ASCII"));
+		out.flush();
+	}
+
+	private static void close(Socket socket) {
+		if (socket != null) {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// 忽略
+			}
+		}
+	}
+
+	/**
+	 * 启动服务器
+	 *
+	 * @param args
+	 *            [-port 端口] [-idle 空闲超时秒数] [-metrics] (记录运行指标, 以 metrics 命令导出)
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int port = DEFAULT_PORT;
+		long idleMillis = DEFAULT_IDLE_MILLIS;
+		for (int i = 0; i < args.length; i++) {
+			if ("-metrics".equals(args[i])) {
+				Metrics.enable();
+			} else if ("-port".equals(args[i]) && i + 1 < args.length) {
+				port = Integer.parseInt(args[++i]);
+			} else if ("-idle".equals(args[i]) && i + 1 < args.length) {
+				idleMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(args[++i]));
+			}
+		}
+
+		Metrics.printOnExit(System.err);
+		Server server = new Server(port, idleMillis);
+		server.start();
+		System.out.println("Listening on " + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort());
+		server.acceptor.join();
+	}
+
+}
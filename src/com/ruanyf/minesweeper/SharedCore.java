@@ -0,0 +1,311 @@
+package com.ruanyf.minesweeper;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 多人同时在同一个棋盘上扫雷 (线程安全)
+ * <p>
+ * 与 {@link Core} 共用同一个棋盘，但每个格子的状态改变都是一次 CAS (盖住 → 翻开 / 标记)，
+ * 因此每个格子至多被翻开一次，任何操作都不会丢失或重复生效：
+ * <ul>
+ * <li>翻开与连锁翻开不加锁，多个玩家的连锁区域重叠时，每个格子归 CAS 成功的玩家，由他继续向外扩展</li>
+ * <li>标记与快速排雷按行分段加锁 (快速排雷锁住上中下三行所在的段)，保证"周边标记数与雷数一致"
+ * 的判断与翻开周边格子之间不会有人改动标记；之后的连锁翻开同样不加锁</li>
+ * <li>待翻开格子数与标记数使用 {@link LongAdder}，多个线程同时累加时互不争用</li>
+ * </ul>
+ * 每个玩家 (线程) 通过自己的 {@link Player} 操作，工作队列与变化的格子都属于玩家自己。
+ * 棋盘的周边计数 ({@link Board#around}) 在多人操作期间不维护, {@link #toCore()} 时重新计算。
+ *
+ * @author Yaofeng Ruan
+ */
+public class SharedCore {
+
+	// 按行分段的锁数量 (2 的幂)
+	private static final int STRIPES = 64;
+
+	private static final VarHandle CELLS = MethodHandles.arrayElementVarHandle(byte[].class);
+
+	private final Core core;
+	private final Board board;
+	private final byte[] cells;
+	private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+	private final LongAdder remain = new LongAdder();
+	private final LongAdder flags = new LongAdder();
+	private final AtomicInteger deadIndex = new AtomicInteger(-1); // 第一个踩到的地雷
+	private volatile boolean isWin;
+
+	/**
+	 * 以核心当前的棋盘开始多人游戏 (之后不要再直接操作核心)
+	 *
+	 * @param core
+	 *            已生成地雷的核心 (init, 或延迟生成后已翻开过一个格子)
+	 */
+	public SharedCore(Core core) {
+		if (core.getBoard() == null || !core.isGenerated()) {
+			throw new IllegalStateException("Mines are not generated");
+		}
+		this.core = core;
+		this.board = core.getBoard();
+		this.cells = board.cells;
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new ReentrantLock();
+		}
+		remain.add(core.remain);
+		flags.add(core.flags);
+		if (core.isGameover) {
+			deadIndex.set(board.index(core.deadRow, core.deadCol));
+		}
+		isWin = core.isWin;
+	}
+
+	/**
+	 * 创建一个玩家 (每个线程使用自己的玩家)
+	 */
+	public Player newPlayer() {
+		return new Player();
+	}
+
+	public boolean isGameover() {
+		return deadIndex.get() >= 0;
+	}
+
+	public boolean isWin() {
+		return isWin;
+	}
+
+	/**
+	 * 获取待翻开格子数 (有操作正在进行时为近似值)
+	 */
+	public int getRemain() {
+		return remain.intValue();
+	}
+
+	/**
+	 * 获取标记数量 (有操作正在进行时为近似值)
+	 */
+	public int getFlags() {
+		return flags.intValue();
+	}
+
+	public int getRowSize() {
+		return board.rowSize;
+	}
+
+	public int getColSize() {
+		return board.colSize;
+	}
+
+	/**
+	 * 获取格子状态 (STAT_*)
+	 */
+	public int getStatus(int row, int col) {
+		return Board.stat((byte) CELLS.getVolatile(cells, board.index(row, col)));
+	}
+
+	/**
+	 * 将计数与胜负写回核心 (所有玩家停止操作后调用, 之后可以继续单人游戏或保存)
+	 *
+	 * @return 核心
+	 */
+	public Core toCore() {
+		VarHandle.fullFence();
+		board.countAround(); // 多人操作时不维护周边计数, 一次重算
+		core.remain = remain.intValue();
+		core.flags = flags.intValue();
+		int dead = deadIndex.get();
+		core.isGameover = dead >= 0;
+		if (dead >= 0) {
+			core.deadRow = board.rowOf(dead);
+			core.deadCol = board.colOf(dead);
+		}
+		core.isWin = isWin;
+		return core;
+	}
+
+	private boolean isOver() {
+		return deadIndex.get() >= 0 || isWin;
+	}
+
+	/**
+	 * 锁住指定各行所在的段 (按段的顺序加锁, 避免死锁)
+	 *
+	 * @return 已锁住的段 (位图)
+	 */
+	private long lockRows(int fromRow, int toRow) {
+		long mask = 0;
+		for (int row = Math.max(0, fromRow); row <= Math.min(board.rowSize - 1, toRow); row++) {
+			mask |= 1L << (row & (STRIPES - 1));
+		}
+		for (long m = mask; m != 0; m &= m - 1) {
+			stripes[Long.numberOfTrailingZeros(m)].lock();
+		}
+		return mask;
+	}
+
+	private void unlock(long mask) {
+		for (long m = mask; m != 0; m &= m - 1) {
+			stripes[Long.numberOfTrailingZeros(m)].unlock();
+		}
+	}
+
+	/**
+	 * 一个玩家 (只能在一个线程中使用)
+	 */
+	public class Player {
+
+		// 翻开操作的工作队列, 操作结束后即为本次操作改变了状态的格子 (与 Core 相同)
+		private int[] queue = new int[1024];
+		private int queueHead, queueTail;
+
+		private Player() {
+		}
+
+		/**
+		 * 翻开指定格子 (游戏结束后忽略)
+		 */
+		public void open(int row, int col) {
+			queueHead = queueTail = 0;
+			if (isOver()) {
+				return;
+			}
+			enqueue(board.index(row, col));
+			reveal();
+		}
+
+		/**
+		 * 标记 / 取消标记指定格子 (游戏结束后忽略)
+		 */
+		public void flag(int row, int col) {
+			queueHead = queueTail = 0;
+			if (isOver()) {
+				return;
+			}
+			int index = board.index(row, col);
+
+			long locked = lockRows(row, row);
+			try {
+				while (true) {
+					byte cell = (byte) CELLS.getVolatile(cells, index);
+					int stat = Board.stat(cell);
+					if (stat == Core.STAT_OPEN) {
+						return;
+					}
+					int newStat = stat == Core.STAT_COVER ? Core.STAT_FLAG : Core.STAT_COVER;
+					if (CELLS.compareAndSet(cells, index, cell, Board.withStat(cell, newStat))) {
+						flags.add(newStat == Core.STAT_FLAG ? 1 : -1);
+						push(index);
+						return;
+					}
+					// 同时被翻开, 重新读取
+				}
+			} finally {
+				unlock(locked);
+			}
+		}
+
+		/**
+		 * 快速排雷 (若周边雷数与周边标记数一致，则翻开周边未标记的格子; 游戏结束后忽略)
+		 */
+		public void sweep(int row, int col) {
+			queueHead = queueTail = 0;
+			if (isOver()) {
+				return;
+			}
+			int[] offset = board.offsetAround;
+			int index = board.index(row, col);
+
+			// 判断与翻开周边格子期间, 周边的标记不会改变
+			long locked = lockRows(row - 1, row + 1);
+			try {
+				byte cell = (byte) CELLS.getVolatile(cells, index);
+				if (Board.stat(cell) != Core.STAT_OPEN) {
+					return;
+				}
+				int flagCount = 0;
+				for (int i = 0; i < offset.length; i++) {
+					if (Board.stat((byte) CELLS.getVolatile(cells, index + offset[i])) == Core.STAT_FLAG) {
+						flagCount++;
+					}
+				}
+				if (flagCount != Board.count(cell)) {
+					return;
+				}
+				for (int i = 0; i < offset.length; i++) {
+					enqueue(index + offset[i]);
+				}
+			} finally {
+				unlock(locked);
+			}
+			reveal();
+		}
+
+		/**
+		 * 以 CAS 将盖住的格子翻开并加入工作队列 (失败说明已被其他操作翻开或标记)
+		 */
+		private void enqueue(int index) {
+			byte cell = (byte) CELLS.getVolatile(cells, index);
+			if ((cell & Board.MASK_STAT) != Board.CELL_COVER
+					|| !CELLS.compareAndSet(cells, index, cell, Board.withStat(cell, Core.STAT_OPEN))) {
+				return;
+			}
+
+			// 踩雷判定 (只记录第一个)
+			if (Board.isMine(cell)) {
+				deadIndex.compareAndSet(-1, index);
+			} else {
+				remain.decrement();
+			}
+			push(index);
+		}
+
+		private void push(int index) {
+			if (queueTail == queue.length) {
+				queue = Arrays.copyOf(queue, queue.length * 2);
+			}
+			queue[queueTail++] = index;
+		}
+
+		/**
+		 * 处理工作队列: 翻到周围无雷的格子则继续翻开周围一圈
+		 */
+		private void reveal() {
+			int[] offset = board.offsetAround;
+			while (queueHead < queueTail) {
+				int index = queue[queueHead++];
+				if ((cells[index] & (Board.MASK_COUNT | Board.BIT_MINE)) == 0) {
+					for (int i = 0; i < offset.length; i++) {
+						enqueue(index + offset[i]);
+					}
+				}
+			}
+
+			// 胜利判定 (最后一个格子被翻开后, 翻开它的玩家必定看到计数归零)
+			if (remain.sum() == 0 && deadIndex.get() < 0) {
+				isWin = true;
+			}
+		}
+
+		/**
+		 * 获取上一次操作改变了状态的格子数量
+		 */
+		public int getChangedSize() {
+			return queueTail;
+		}
+
+		public int getChangedRow(int i) {
+			return board.rowOf(queue[i]);
+		}
+
+		public int getChangedCol(int i) {
+			return board.colOf(queue[i]);
+		}
+
+	}
+
+}
@@ -0,0 +1,341 @@
+package com.ruanyf.minesweeper;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无界面的批量对局模拟 (统计胜率与棋盘数据)
+ * <p>
+ * 多个工作线程并行对局，每个线程复用自己的核心、策略与临时数组，对局过程中不分配新的棋盘。
+ * 第 i 局的棋盘与策略的随机种子都只由主种子和 i 决定，统计量均为求和，
+ * 因此除耗时以外，相同主种子的结果与线程数无关。
+ *
+ * @author Yaofeng Ruan
+ */
+public class Simulator {
+
+	// 每次领取的对局数
+	private static final int BATCH_SIZE = 64;
+
+	/**
+	 * 创建策略的工厂 (每个工作线程各创建一个策略)
+	 */
+	public interface StrategyFactory {
+		Strategy create();
+	}
+
+	/**
+	 * 模拟结果
+	 */
+	public static class Result {
+
+		public final long games;
+		public final long wins;
+		public final long total3BV;
+		public final long totalMoves;
+		public final long totalNanos; // 所有对局耗时之和 (各线程累计)
+		public final long elapsedNanos; // 实际经过的时间
+
+		Result(long games, long wins, long total3BV, long totalMoves, long totalNanos, long elapsedNanos) {
+			this.games = games;
+			this.wins = wins;
+			this.total3BV = total3BV;
+			this.totalMoves = totalMoves;
+			this.totalNanos = totalNanos;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("games %d, win rate %.4f%%, avg 3BV %.3f, avg moves %.3f, avg time %.3f us, %.1f games/s",
+					games, wins * 100.0 / games, (double) total3BV / games, (double) totalMoves / games,
+					totalNanos / 1e3 / games, games / (elapsedNanos / 1e9));
+		}
+
+	}
+
+	private final int rowSize, colSize, mineSize;
+
+	/**
+	 * 创建指定尺寸的模拟器 (第一次点击必定安全)
+	 *
+	 * @param rowSize
+	 *            格子行数 (高度)
+	 * @param colSize
+	 *            格子列数 (宽度)
+	 * @param mineSize
+	 *            地雷的数量
+	 */
+	public Simulator(int rowSize, int colSize, int mineSize) {
+		this.rowSize = rowSize;
+		this.colSize = colSize;
+		this.mineSize = mineSize;
+	}
+
+	/**
+	 * 运行模拟
+	 *
+	 * @param games
+	 *            对局数
+	 * @param threads
+	 *            工作线程数
+	 * @param masterSeed
+	 *            主种子
+	 * @param factory
+	 *            策略工厂
+	 * @return 模拟结果
+	 */
+	public Result run(final long games, int threads, final long masterSeed, final StrategyFactory factory) throws InterruptedException {
+		final AtomicLong next = new AtomicLong();
+		final LongAdder wins = new LongAdder();
+		final LongAdder total3BV = new LongAdder();
+		final LongAdder totalMoves = new LongAdder();
+		final LongAdder totalNanos = new LongAdder();
+
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			workers[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					Core core = new Core();
+					core.parallelThreshold = Integer.MAX_VALUE; // 已在多线程中运行, 单局无需再并行
+					Strategy strategy = factory.create();
+					Scratch scratch = new Scratch();
+
+					long start;
+					while ((start = next.getAndAdd(BATCH_SIZE)) < games) {
+						long end = Math.min(start + BATCH_SIZE, games);
+						for (long i = start; i < end; i++) {
+							long time = System.nanoTime();
+							long seed = mix(masterSeed + i * 0x9E3779B97F4A7C15L);
+
+							core.initLazy(rowSize, colSize, mineSize, seed);
+							strategy.reset(core, mix(seed));
+
+							// 步数上限防止策略原地打转
+							long moves = 0;
+							long limit = (long) rowSize * colSize * 2 + 16;
+							while (!core.isGameover && !core.isWin && moves < limit) {
+								strategy.move();
+								moves++;
+							}
+
+							if (core.isWin) {
+								wins.increment();
+							}
+							if (core.isGenerated()) {
+								total3BV.add(scratch.count3BV(core.getBoard()));
+							}
+							totalMoves.add(moves);
+							totalNanos.add(System.nanoTime() - time);
+						}
+					}
+				}
+			}, "simulator-" + t);
+		}
+
+		long begin = System.nanoTime();
+		for (Thread worker : workers) {
+			worker.start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		return new Result(games, wins.sum(), total3BV.sum(), totalMoves.sum(), totalNanos.sum(), System.nanoTime() - begin);
+	}
+
+	/**
+	 * SplitMix64 混淆函数 (由序号派生互不相关的种子)
+	 */
+	static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * 工作线程复用的临时数组 (用于计算 3BV)
+	 */
+	private static class Scratch {
+
+		long[] visited = new long[0];
+		int[] stack = new int[0];
+
+		/**
+		 * 计算棋盘的 3BV (不使用快速排雷和标记时, 解开棋盘最少需要的点击数):
+		 * 每片相连的空白区域计 1, 不与空白区域相邻的数字格各计 1
+		 */
+		int count3BV(Board board) {
+			byte[] cells = board.cells;
+			int[] offset = board.offsetAround;
+			if (stack.length < cells.length) {
+				visited = new long[(cells.length >> 6) + 1];
+				stack = new int[cells.length];
+			} else {
+				Arrays.fill(visited, 0);
+			}
+
+			int count = 0;
+
+			// 空白区域 (连同边缘的数字格一起标记)
+			for (int index = 0; index < cells.length; index++) {
+				if (!isBlank(cells[index]) || isVisited(index)) {
+					continue;
+				}
+				count++;
+				int size = 0;
+				stack[size++] = index;
+				setVisited(index);
+				while (size > 0) {
+					int current = stack[--size];
+					if (!isBlank(cells[current])) {
+						continue;
+					}
+					for (int i = 0; i < offset.length; i++) {
+						int around = current + offset[i];
+						if ((cells[around] & Board.BIT_BORDER) == 0 && !isVisited(around)) {
+							setVisited(around);
+							stack[size++] = around;
+						}
+					}
+				}
+			}
+
+			// 剩余的数字格
+			for (int index = 0; index < cells.length; index++) {
+				if ((cells[index] & (Board.BIT_BORDER | Board.BIT_MINE)) == 0 && !isVisited(index)) {
+					count++;
+				}
+			}
+			return count;
+		}
+
+		private static boolean isBlank(byte cell) {
+			return (cell & (Board.BIT_BORDER | Board.BIT_MINE | Board.MASK_COUNT)) == 0;
+		}
+
+		private boolean isVisited(int index) {
+			return (visited[index >> 6] & 1L << index) != 0;
+		}
+
+		private void setVisited(int index) {
+			visited[index >> 6] |= 1L << index;
+		}
+
+	}
+
+	/**
+	 * 随机翻开格子的策略 (基准)
+	 */
+	public static class RandomStrategy implements Strategy {
+
+		private Core core;
+		private long state;
+
+		@Override
+		public void reset(Core core, long seed) {
+			this.core = core;
+			this.state = seed;
+		}
+
+		@Override
+		public void move() {
+			int row, col;
+			do {
+				row = (int) ((next() >>> 33) % core.getRowSize());
+				col = (int) ((next() >>> 33) % core.getColSize());
+			} while (core.getStatus(row, col) != Core.STAT_COVER);
+			core.open(row, col);
+		}
+
+		private long next() {
+			return mix(state += 0x9E3779B97F4A7C15L);
+		}
+
+	}
+
+	/**
+	 * 使用求解器的策略: 能推理时按推理操作, 否则猜测
+	 * (使用概率计算时猜最安全的格子, 否则随机猜)
+	 */
+	public static class SolverStrategy implements Strategy {
+
+		private final boolean useProbability;
+		private Core core;
+		private Solver solver;
+		private ProbabilityEngine engine;
+		private final RandomStrategy random = new RandomStrategy();
+
+		public SolverStrategy(boolean useProbability) {
+			this.useProbability = useProbability;
+		}
+
+		@Override
+		public void reset(Core core, long seed) {
+			if (this.core != core) {
+				this.core = core;
+				solver = new Solver(core);
+				engine = new ProbabilityEngine(core);
+			}
+			solver.reset();
+			random.reset(core, seed);
+		}
+
+		@Override
+		public void move() {
+			if (!core.isGenerated()) {
+				// 第一次点击 (必定安全) 选在中央
+				solver.open(core.getRowSize() / 2, core.getColSize() / 2);
+			} else if (!solver.step()) {
+				if (useProbability) {
+					engine.compute();
+					solver.open(engine.getSafestRow(), engine.getSafestCol());
+				} else {
+					int row, col;
+					do {
+						row = (int) ((random.next() >>> 33) % core.getRowSize());
+						col = (int) ((random.next() >>> 33) % core.getColSize());
+					} while (core.getStatus(row, col) != Core.STAT_COVER);
+					solver.open(row, col);
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * 运行模拟并输出结果
+	 *
+	 * @param args
+	 *            行数 列数 雷数 对局数 [线程数] [主种子] [策略: solver / guess / random]
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		if (args.length < 4) {
+			System.out.println("Usage: Simulator rows cols mines games [threads] [seed] [solver|guess|random]");
+			return;
+		}
+		int rowSize = Integer.parseInt(args[0]);
+		int colSize = Integer.parseInt(args[1]);
+		int mineSize = Integer.parseInt(args[2]);
+		long games = Long.parseLong(args[3]);
+		int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+		long seed = args.length > 5 ? Long.parseLong(args[5]) : 0;
+		final String name = args.length > 6 ? args[6] : "solver";
+
+		StrategyFactory factory = new StrategyFactory() {
+			@Override
+			public Strategy create() {
+				if ("random".equals(name)) {
+					return new RandomStrategy();
+				}
+				return new SolverStrategy(!"guess".equals(name));
+			}
+		};
+
+		Metrics.printOnExit(System.err); // -Dminesweeper.metrics=true
+		Result result = new Simulator(rowSize, colSize, mineSize).run(games, threads, seed, factory);
+		System.out.println(result);
+	}
+
+}
@@ -0,0 +1,422 @@
+package com.ruanyf.minesweeper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 对局存档 (完整的游戏状态, 可以中途保存并在之后继续)
+ * <p>
+ * 文件格式 (整数均为大端序)：
+ * <ul>
+ * <li>头部 (固定 {@value #HEADER_SIZE} 字节): "MSS"、版本 (1字节)、行数、列数、雷数、种子、待翻开格子数、标记数量、
+ * 爆炸的行列索引、状态位 (1: 已生成地雷, 2: 游戏结束, 4: 胜利)、状态段的字节数、保留的 4 字节</li>
+ * <li>地雷位图 (仅在已生成地雷时存在): 每格 1 位, 格子序号为 row * colSize + col</li>
+ * <li>状态段: 按格子序号顺序游程编码, 每段为变长整数 (长度 &lt;&lt; 2 | 状态)</li>
+ * </ul>
+ * 周围雷数与周边计数可以由地雷与状态推算, 不保存。大棋盘上绝大部分格子仍然盖住, 状态段通常只有几个字节到几 MB。
+ * <p>
+ * 读写都通过内存映射文件直接在棋盘的字节数组与映射区之间进行 (超过 {@value #WINDOW_SIZE} 字节时分段映射),
+ * 不为格子创建任何对象, 上亿格的棋盘保存与载入的耗时取决于磁盘带宽。
+ *
+ * @author Yaofeng Ruan
+ */
+public class Snapshot {
+
+	public static final int VERSION = 1;
+
+	// 存档文件的扩展名与默认保存目录
+	public static final String EXTENSION = ".mss";
+	public static final String PATH_DEFAULT_DIR = "saves";
+
+	public static final int HEADER_SIZE = 56;
+
+	// 单次映射的最大字节数
+	private static final int WINDOW_SIZE = 1 << 28;
+	// 地雷位图整块读写的字节数
+	private static final int CHUNK_SIZE = 1 << 16;
+
+	private static final byte[] MAGIC = { 'M', 'S', 'S' };
+
+	// 头部的状态位
+	private static final int FLAG_GENERATED = 1;
+	private static final int FLAG_GAMEOVER = 2;
+	private static final int FLAG_WIN = 4;
+
+	private Snapshot() {
+	}
+
+	/**
+	 * 将核心的当前状态保存到文件 (覆盖已有文件)
+	 *
+	 * @param core
+	 *            已初始化的游戏核心
+	 * @param file
+	 *            存档文件
+	 */
+	public static void save(Core core, File file) throws IOException {
+		Board board = core.getBoard();
+		if (board == null) {
+			throw new IllegalStateException("Core is not initialized");
+		}
+		byte[] cells = board.cells;
+		int rowSize = board.rowSize;
+		int colSize = board.colSize;
+		long cellSize = (long) rowSize * colSize;
+		boolean isGenerated = core.isGenerated();
+
+		// 先计算状态段的长度, 以便一次确定文件大小
+		long statusSize = 0;
+		int runStat = -1;
+		long runLength = 0;
+		for (int row = 0; row < rowSize; row++) {
+			for (int i = board.index(row, 0), end = i + colSize; i < end; i++) {
+				int stat = Board.stat(cells[i]);
+				if (stat != runStat) {
+					if (runLength > 0) {
+						statusSize += varLongSize(runLength << 2 | runStat);
+					}
+					runStat = stat;
+					runLength = 0;
+				}
+				runLength++;
+			}
+		}
+		statusSize += varLongSize(runLength << 2 | runStat);
+
+		long bitsSize = isGenerated ? (cellSize + 7) >>> 3 : 0;
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			Output out = new Output(channel, HEADER_SIZE + bitsSize + statusSize);
+
+			// 头部
+			for (byte b : MAGIC) {
+				out.put(b);
+			}
+			out.put((byte) VERSION);
+			out.putInt(rowSize);
+			out.putInt(colSize);
+			out.putInt(core.getMineSize());
+			out.putLong(core.seed);
+			out.putInt(core.remain);
+			out.putInt(core.flags);
+			out.putInt(core.deadRow);
+			out.putInt(core.deadCol);
+			out.putInt((isGenerated ? FLAG_GENERATED : 0) | (core.isGameover ? FLAG_GAMEOVER : 0) | (core.isWin ? FLAG_WIN : 0));
+			out.putLong(statusSize);
+			out.putInt(0); // 保留
+
+			// 地雷位图 (每8格拼成一个字节, 攒满一块后整块写入)
+			if (isGenerated) {
+				byte[] chunk = new byte[CHUNK_SIZE];
+				int chunkSize = 0;
+				int bits = 0, bitCount = 0;
+				for (int row = 0; row < rowSize; row++) {
+					for (int i = board.index(row, 0), end = i + colSize; i < end; i++) {
+						bits |= (cells[i] >> 4 & 1) << bitCount; // 地雷位 (BIT_MINE)
+						if (++bitCount == 8) {
+							chunk[chunkSize++] = (byte) bits;
+							bits = bitCount = 0;
+							if (chunkSize == CHUNK_SIZE) {
+								out.put(chunk, chunkSize);
+								chunkSize = 0;
+							}
+						}
+					}
+				}
+				if (bitCount > 0) {
+					chunk[chunkSize++] = (byte) bits;
+				}
+				out.put(chunk, chunkSize);
+			}
+
+			// 状态段 (游程编码)
+			runStat = -1;
+			runLength = 0;
+			for (int row = 0; row < rowSize; row++) {
+				for (int i = board.index(row, 0), end = i + colSize; i < end; i++) {
+					int stat = Board.stat(cells[i]);
+					if (stat != runStat) {
+						if (runLength > 0) {
+							out.putVarLong(runLength << 2 | runStat);
+						}
+						runStat = stat;
+						runLength = 0;
+					}
+					runLength++;
+				}
+			}
+			out.putVarLong(runLength << 2 | runStat);
+		}
+	}
+
+	/**
+	 * 从文件载入游戏状态到核心
+	 * <p>
+	 * 载入的对局无法从头重现, 因此核心的 {@link Core#recording} 被置为null。
+	 *
+	 * @param core
+	 *            游戏核心 (尺寸相同时复用其棋盘)
+	 * @param file
+	 *            存档文件
+	 * @throws IOException
+	 *             读取失败, 或不是有效的存档
+	 */
+	public static void load(Core core, File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long fileSize = channel.size();
+			if (fileSize < HEADER_SIZE) {
+				throw new IOException("Not a snapshot");
+			}
+			Input in = new Input(channel, fileSize);
+
+			// 头部
+			for (byte b : MAGIC) {
+				if (in.get() != b) {
+					throw new IOException("Not a snapshot");
+				}
+			}
+			int version = in.get();
+			if (version != VERSION) {
+				throw new IOException("Unsupported snapshot version: " + version);
+			}
+			int rowSize = in.getInt();
+			int colSize = in.getInt();
+			int mineSize = in.getInt();
+			long seed = in.getLong();
+			int remain = in.getInt();
+			int flags = in.getInt();
+			int deadRow = in.getInt();
+			int deadCol = in.getInt();
+			int state = in.getInt();
+			long statusSize = in.getLong();
+			in.getInt(); // 保留
+
+			boolean isGenerated = (state & FLAG_GENERATED) != 0;
+			long cellSize = (long) rowSize * colSize;
+			long bitsSize = isGenerated ? (cellSize + 7) >>> 3 : 0;
+			if (rowSize <= 0 || colSize <= 0 || statusSize <= 0 || HEADER_SIZE + bitsSize + statusSize > fileSize) {
+				throw new IOException("Corrupt snapshot header");
+			}
+
+			core.recording = null;
+			try {
+				core.initLazy(rowSize, colSize, mineSize, seed);
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Corrupt snapshot header", e);
+			}
+			Board board = core.getBoard();
+			byte[] cells = board.cells;
+
+			// 地雷位图 (整块读入后展开)
+			if (isGenerated) {
+				byte[] chunk = new byte[CHUNK_SIZE];
+				int chunkPos = CHUNK_SIZE;
+				long chunkRemain = bitsSize;
+				int bits = 0, bitCount = 8;
+				for (int row = 0; row < rowSize; row++) {
+					for (int i = board.index(row, 0), end = i + colSize; i < end; i++) {
+						if (bitCount == 8) {
+							if (chunkPos == CHUNK_SIZE) {
+								in.get(chunk, (int) Math.min(CHUNK_SIZE, chunkRemain));
+								chunkRemain -= CHUNK_SIZE;
+								chunkPos = 0;
+							}
+							bits = chunk[chunkPos++];
+							bitCount = 0;
+						}
+						cells[i] |= (bits >> bitCount++ & 1) << 4; // 地雷位 (BIT_MINE)
+					}
+				}
+				try {
+					core.restoreMines();
+				} catch (IllegalArgumentException e) {
+					throw new IOException("Corrupt snapshot mines", e);
+				}
+			}
+
+			// 状态段 (initLazy 之后全部盖住, 只需写入其他状态的游程)
+			long position = 0;
+			while (position < cellSize) {
+				long value = in.getVarLong();
+				int stat = (int) (value & 3);
+				long length = value >>> 2;
+				if (stat > Core.STAT_FLAG || length <= 0 || length > cellSize - position) {
+					throw new IOException("Corrupt snapshot status");
+				}
+				if (stat != Core.STAT_COVER) {
+					for (long p = position, end = position + length; p < end;) {
+						int row = (int) (p / colSize);
+						int col = (int) (p % colSize);
+						int span = (int) Math.min(end - p, colSize - col);
+						for (int i = board.index(row, col), last = i + span; i < last; i++) {
+							cells[i] = Board.withStat(cells[i], stat);
+						}
+						p += span;
+					}
+				}
+				position += length;
+			}
+			board.countAround();
+
+			core.remain = remain;
+			core.flags = flags;
+			core.deadRow = deadRow;
+			core.deadCol = deadCol;
+			core.isGameover = (state & FLAG_GAMEOVER) != 0;
+			core.isWin = (state & FLAG_WIN) != 0;
+		}
+	}
+
+	private static int varLongSize(long value) {
+		int size = 1;
+		while ((value & ~0x7FL) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+	/**
+	 * 分段映射的顺序写入
+	 */
+	private static class Output {
+
+		private final FileChannel channel;
+		private final long size;
+		private long position; // 当前映射区在文件中的起始位置
+		private MappedByteBuffer buffer;
+
+		Output(FileChannel channel, long size) throws IOException {
+			this.channel = channel;
+			this.size = size;
+			map(0);
+		}
+
+		private void map(long position) throws IOException {
+			this.position = position;
+			buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.min(WINDOW_SIZE, size - position));
+		}
+
+		void put(byte b) throws IOException {
+			if (!buffer.hasRemaining()) {
+				map(position + buffer.capacity());
+			}
+			buffer.put(b);
+		}
+
+		/**
+		 * 整块写入 (可以跨越映射区)
+		 */
+		void put(byte[] bytes, int length) throws IOException {
+			int offset = 0;
+			while (offset < length) {
+				if (!buffer.hasRemaining()) {
+					map(position + buffer.capacity());
+				}
+				int n = Math.min(length - offset, buffer.remaining());
+				buffer.put(bytes, offset, n);
+				offset += n;
+			}
+		}
+
+		void putInt(int value) throws IOException {
+			for (int shift = 24; shift >= 0; shift -= 8) {
+				put((byte) (value >>> shift));
+			}
+		}
+
+		void putLong(long value) throws IOException {
+			putInt((int) (value >>> 32));
+			putInt((int) value);
+		}
+
+		void putVarLong(long value) throws IOException {
+			while ((value & ~0x7FL) != 0) {
+				put((byte) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			put((byte) value);
+		}
+
+	}
+
+	/**
+	 * 分段映射的顺序读取
+	 */
+	private static class Input {
+
+		private final FileChannel channel;
+		private final long size;
+		private long position; // 当前映射区在文件中的起始位置
+		private MappedByteBuffer buffer;
+
+		Input(FileChannel channel, long size) throws IOException {
+			this.channel = channel;
+			this.size = size;
+			map(0);
+		}
+
+		private void map(long position) throws IOException {
+			this.position = position;
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, size - position));
+		}
+
+		byte get() throws IOException {
+			if (!buffer.hasRemaining()) {
+				if (position + buffer.capacity() >= size) {
+					throw new IOException("Truncated snapshot");
+				}
+				map(position + buffer.capacity());
+			}
+			return buffer.get();
+		}
+
+		/**
+		 * 整块读取 (可以跨越映射区)
+		 */
+		void get(byte[] bytes, int length) throws IOException {
+			int offset = 0;
+			while (offset < length) {
+				if (!buffer.hasRemaining()) {
+					if (position + buffer.capacity() >= size) {
+						throw new IOException("Truncated snapshot");
+					}
+					map(position + buffer.capacity());
+				}
+				int n = Math.min(length - offset, buffer.remaining());
+				buffer.get(bytes, offset, n);
+				offset += n;
+			}
+		}
+
+		int getInt() throws IOException {
+			int value = 0;
+			for (int i = 0; i < 4; i++) {
+				value = value << 8 | (get() & 0xFF);
+			}
+			return value;
+		}
+
+		long getLong() throws IOException {
+			return (long) getInt() << 32 | (getInt() & 0xFFFFFFFFL);
+		}
+
+		long getVarLong() throws IOException {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				byte b = get();
+				value |= (long) (b & 0x7F) << shift;
+				if (b >= 0) {
+					return value;
+				}
+			}
+			throw new IOException("Malformed varint");
+		}
+
+	}
+
+}
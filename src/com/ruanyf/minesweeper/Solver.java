@@ -0,0 +1,365 @@
+package com.ruanyf.minesweeper;
+
+import java.util.Arrays;
+
+/**
+ * 无界面的扫雷求解器 (只做确定性推理, 从不猜测)
+ * <p>
+ * 通过 {@link Core#open(int, int)}、{@link Core#flag(int, int)} 与
+ * {@link Core#sweep(int, int)} 操作棋盘，推理规则：
+ * <ul>
+ * <li>单格规则：数字格周边的标记数等于数字，其余未翻开的格子都安全 (快速排雷)；
+ * 周边的未知格子数等于剩余雷数，这些格子都是地雷 (标记)</li>
+ * <li>子集/超集规则：对相邻的两个数字格 A、B，设只属于 A 的未知格子为 a 个，只属于 B 的为 b 个，
+ * 若 B 与 A 的剩余雷数之差等于 b，则只属于 B 的格子都是地雷、只属于 A 的格子都安全 (反之亦然)</li>
+ * </ul>
+ * 前沿 (周边还有未知格子的数字格) 与待检查的约束在每一步操作之后增量维护：
+ * 只有被翻开的格子及其周边、被标记格子的周边会重新检查，无需扫描整个棋盘。
+ * 调用 {@link #reset()} 时才会扫描一次棋盘。
+ *
+ * @author Yaofeng Ruan
+ */
+public class Solver {
+
+	// 格子标志位
+	private static final byte MARK_QUEUED = 1; // 在单格规则的待检查队列中
+	private static final byte MARK_FRONTIER = 2; // 属于前沿
+	private static final byte MARK_PAIR_QUEUED = 4; // 在子集规则的待检查队列中
+
+	private final Core core;
+
+	private Board board;
+	private byte[] cells;
+	private byte[] around; // 周边盖住的格子数与标记数 (由核心维护)
+	private int[] offset; // 周边 8 格的下标偏移量
+	private int[] offsetNear; // 周边 5x5 范围 (可能共享未知格子的数字格) 的下标偏移量
+	private int nearStride; // offsetNear 对应的棋盘行宽 (格子数相同的棋盘行宽可能不同, 如 16x30 与 30x16)
+
+	private byte[] marks;
+	private int[] work; // 单格规则的待检查格子 (栈)
+	private int workSize;
+	private int[] pairWork; // 子集规则的待检查格子 (栈)
+	private int pairWorkSize;
+	private int frontierSize;
+
+	// 子集规则的临时数组 (未知格子的下标)
+	private final int[] unknownA = new int[8];
+	private final int[] unknownB = new int[8];
+
+	/**
+	 * 创建绑定到指定核心的求解器
+	 *
+	 * @param core
+	 *            游戏核心
+	 */
+	public Solver(Core core) {
+		this.core = core;
+	}
+
+	/**
+	 * 获取绑定的核心
+	 */
+	public Core getCore() {
+		return core;
+	}
+
+	/**
+	 * 获取当前前沿的格子数量 (周边还有未知格子的数字格)
+	 */
+	public int getFrontierSize() {
+		return frontierSize;
+	}
+
+	/**
+	 * 根据核心的当前局面重建求解状态 (核心重新初始化之后需要调用)
+	 */
+	public void reset() {
+		board = core.getBoard();
+		cells = board.cells;
+		around = board.around;
+		offset = board.offsetAround;
+
+		if (marks == null || marks.length != cells.length) {
+			marks = new byte[cells.length];
+			work = new int[cells.length];
+			pairWork = new int[cells.length];
+		} else {
+			Arrays.fill(marks, (byte) 0);
+		}
+		if (offsetNear == null || nearStride != board.stride) {
+			offsetNear = new int[24];
+			int n = 0;
+			for (int dr = -2; dr <= 2; dr++) {
+				for (int dc = -2; dc <= 2; dc++) {
+					if (dr != 0 || dc != 0) {
+						offsetNear[n++] = dr * board.stride + dc;
+					}
+				}
+			}
+			nearStride = board.stride;
+		}
+		workSize = 0;
+		pairWorkSize = 0;
+		frontierSize = 0;
+
+		// 已翻开的数字格都需要检查一次
+		for (int index = 0; index < cells.length; index++) {
+			enqueue(index);
+		}
+	}
+
+	/**
+	 * 从当前局面开始不猜测地求解，直至胜利、失败或无法继续推理
+	 *
+	 * @return 若获胜则返回true
+	 */
+	public boolean solve() {
+		reset();
+		while (step()) {
+		}
+		return core.isWin;
+	}
+
+	/**
+	 * 执行一步确定性的操作 (翻开、标记或快速排雷)
+	 *
+	 * @return 若执行了操作则返回true, 游戏已结束或无法继续推理时返回false
+	 */
+	public boolean step() {
+		while (!core.isGameover && !core.isWin) {
+			if (workSize > 0) {
+				int index = work[--workSize];
+				marks[index] &= ~MARK_QUEUED;
+				if (applySingle(index)) {
+					return true;
+				}
+			} else if (pairWorkSize > 0) {
+				int index = pairWork[--pairWorkSize];
+				marks[index] &= ~MARK_PAIR_QUEUED;
+				if ((marks[index] & MARK_FRONTIER) != 0 && applyPairs(index)) {
+					return true;
+				}
+			} else {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 翻开指定格子并更新求解状态 (供外部猜测时使用)
+	 *
+	 * @param row
+	 *            行索引 (从0起算)
+	 * @param col
+	 *            列索引 (从0起算)
+	 */
+	public void open(int row, int col) {
+		core.open(row, col);
+		afterReveal();
+	}
+
+	/**
+	 * 标记指定格子并更新求解状态 (供外部操作时使用)
+	 *
+	 * @param row
+	 *            行索引 (从0起算)
+	 * @param col
+	 *            列索引 (从0起算)
+	 */
+	public void flag(int row, int col) {
+		core.flag(row, col);
+		afterFlag(board.index(row, col));
+	}
+
+	/**
+	 * 对数字格应用单格规则
+	 *
+	 * @param index
+	 *            棋盘下标
+	 * @return 若执行了操作则返回true
+	 */
+	private boolean applySingle(int index) {
+		int unknownSize = Board.covered(around[index]);
+		if (unknownSize == 0) {
+			return false;
+		}
+
+		int need = need(index);
+		if (need == 0) {
+			// 周边地雷均已标记, 其余格子安全
+			core.sweep(board.rowOf(index), board.colOf(index));
+			afterReveal();
+			return true;
+		} else if (need == unknownSize) {
+			// 周边的未知格子都是地雷
+			collectUnknown(index, unknownA);
+			flagAll(unknownA, unknownSize);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 对数字格 A 与其 5x5 范围内的每个前沿数字格 B 应用子集/超集规则
+	 *
+	 * @param a
+	 *            数字格 A 的棋盘下标
+	 * @return 若执行了操作则返回true
+	 */
+	private boolean applyPairs(int a) {
+		int sizeA = collectUnknown(a, unknownA);
+		int needA = need(a);
+
+		for (int i = 0; i < offsetNear.length; i++) {
+			int b = a + offsetNear[i];
+			if (b < 0 || b >= cells.length || (marks[b] & MARK_FRONTIER) == 0) {
+				continue;
+			}
+			int sizeB = collectUnknown(b, unknownB);
+			int needB = need(b);
+
+			// 统计共享的未知格子, 并将其从两个列表中剔除 (置为 -1)
+			int shared = 0;
+			for (int x = 0; x < sizeA; x++) {
+				for (int y = 0; y < sizeB; y++) {
+					if (unknownA[x] == unknownB[y]) {
+						unknownA[x] = unknownB[y] = -1;
+						shared++;
+						break;
+					}
+				}
+			}
+			if (shared == 0) {
+				continue;
+			}
+
+			int onlyA = sizeA - shared;
+			int onlyB = sizeB - shared;
+			int diff = needB - needA;
+			if (diff == onlyB && onlyA + onlyB > 0) {
+				// 只属于 B 的格子都是地雷, 只属于 A 的格子都安全
+				flagAll(unknownB, sizeB);
+				openAll(unknownA, sizeA);
+				return true;
+			} else if (-diff == onlyA && onlyA + onlyB > 0) {
+				// 只属于 A 的格子都是地雷, 只属于 B 的格子都安全
+				flagAll(unknownA, sizeA);
+				openAll(unknownB, sizeB);
+				return true;
+			}
+
+			// 恢复 A 的列表, 继续与下一个数字格比较
+			sizeA = collectUnknown(a, unknownA);
+		}
+		return false;
+	}
+
+	/**
+	 * 收集数字格周边的未知格子 (未翻开且未标记)
+	 *
+	 * @param index
+	 *            棋盘下标
+	 * @param unknown
+	 *            存放未知格子下标的数组
+	 * @return 未知格子的数量
+	 */
+	private int collectUnknown(int index, int[] unknown) {
+		int size = 0;
+		for (int i = 0; i < offset.length; i++) {
+			int around = index + offset[i];
+			if (Board.stat(cells[around]) == Core.STAT_COVER) {
+				unknown[size++] = around;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * 计算数字格周边尚未标记的雷数
+	 */
+	private int need(int index) {
+		return Board.count(cells[index]) - Board.flags(around[index]);
+	}
+
+	/**
+	 * 标记列表中的所有格子 (跳过值为 -1 的项)
+	 */
+	private void flagAll(int[] list, int size) {
+		for (int i = 0; i < size; i++) {
+			int index = list[i];
+			if (index >= 0 && Board.stat(cells[index]) == Core.STAT_COVER) {
+				core.flag(board.rowOf(index), board.colOf(index));
+				afterFlag(index);
+			}
+		}
+	}
+
+	/**
+	 * 翻开列表中的所有格子 (跳过值为 -1 的项)
+	 */
+	private void openAll(int[] list, int size) {
+		for (int i = 0; i < size; i++) {
+			int index = list[i];
+			if (index >= 0 && Board.stat(cells[index]) == Core.STAT_COVER) {
+				core.open(board.rowOf(index), board.colOf(index));
+				afterReveal();
+			}
+		}
+	}
+
+	/**
+	 * 翻开格子之后: 被翻开的格子及其周边的数字格需要重新检查
+	 */
+	private void afterReveal() {
+		for (int i = core.getChangedSize() - 1; i >= 0; i--) {
+			int index = core.getChanged(i);
+			enqueue(index);
+			for (int j = 0; j < offset.length; j++) {
+				enqueue(index + offset[j]);
+			}
+		}
+	}
+
+	/**
+	 * 标记格子之后: 周边的数字格需要重新检查
+	 */
+	private void afterFlag(int index) {
+		for (int j = 0; j < offset.length; j++) {
+			enqueue(index + offset[j]);
+		}
+	}
+
+	/**
+	 * 将数字格加入待检查队列, 同时更新其前沿标志
+	 */
+	private void enqueue(int index) {
+		byte cell = cells[index];
+		if (Board.stat(cell) != Core.STAT_OPEN || (cell & (Board.BIT_BORDER | Board.BIT_MINE)) != 0 || Board.count(cell) == 0) {
+			return;
+		}
+
+		// 更新前沿标志
+		if (Board.covered(around[index]) == 0) {
+			if ((marks[index] & MARK_FRONTIER) != 0) {
+				marks[index] &= ~MARK_FRONTIER;
+				frontierSize--;
+			}
+			return;
+		}
+		if ((marks[index] & MARK_FRONTIER) == 0) {
+			marks[index] |= MARK_FRONTIER;
+			frontierSize++;
+		}
+
+		if ((marks[index] & MARK_QUEUED) == 0) {
+			marks[index] |= MARK_QUEUED;
+			work[workSize++] = index;
+		}
+		if ((marks[index] & MARK_PAIR_QUEUED) == 0) {
+			marks[index] |= MARK_PAIR_QUEUED;
+			pairWork[pairWorkSize++] = index;
+		}
+	}
+
+}
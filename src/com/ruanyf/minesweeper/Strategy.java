@@ -0,0 +1,27 @@
+package com.ruanyf.minesweeper;
+
+/**
+ * 无界面对局的操作策略 (供 {@link Simulator} 等调用)
+ * <p>
+ * 每个实例只在一个线程中使用，可以复用于多局游戏。
+ *
+ * @author Yaofeng Ruan
+ */
+public interface Strategy {
+
+	/**
+	 * 新的一局开始 (核心已初始化, 尚未翻开任何格子)
+	 *
+	 * @param core
+	 *            游戏核心
+	 * @param seed
+	 *            本局的随机种子 (策略需要随机猜测时使用, 保证结果可重现)
+	 */
+	void reset(Core core, long seed);
+
+	/**
+	 * 执行一步操作 (翻开、标记或快速排雷)
+	 */
+	void move();
+
+}
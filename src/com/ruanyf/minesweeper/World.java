@@ -0,0 +1,536 @@
+package com.ruanyf.minesweeper;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * 无限大的棋盘 (无尽模式)
+ * <p>
+ * 棋盘划分为 {@value #CHUNK_SIZE}x{@value #CHUNK_SIZE} 的区块，每个区块的地雷由 (种子, 区块坐标) 的散列决定，
+ * 只在操作或连锁翻开到达时才创建。区块内格子的字节布局与 {@link Board} 相同 (周围雷数、地雷、状态)，
+ * 计算区块边缘的周围雷数时临时生成相邻区块的地雷 (不创建区块)。
+ * <p>
+ * 区块保存在按访问顺序淘汰的缓存中：被改动过的区块淘汰时保存到目录中的文件 (每格 2 位状态)，
+ * 之后再到达时重新生成地雷并读回状态；从未改动的区块直接丢弃。无论走多远，内存中最多只有缓存上限个区块。
+ * <p>
+ * 坐标可以为负数，第一次翻开 (0, 0) 必定安全 (其周围一圈没有地雷)。没有胜利，翻开的格子数即为分数。
+ * 翻开、标记与快速排雷跨区块时使用与 {@link Core} 相同的周边偏移量。
+ *
+ * @author Yaofeng Ruan
+ */
+public class World {
+
+	public static final int CHUNK_SHIFT = 6;
+	public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+	private static final int CHUNK_CELLS = CHUNK_SIZE * CHUNK_SIZE;
+	private static final int PADDED_STRIDE = CHUNK_SIZE + 2;
+
+	// 每个区块的默认雷数 (约 16%) 与允许的范围 (雷太少时连锁翻开可能无穷无尽)
+	public static final int DEFAULT_MINES_PER_CHUNK = 655;
+	public static final int MIN_MINES_PER_CHUNK = CHUNK_CELLS / 8;
+	public static final int MAX_MINES_PER_CHUNK = CHUNK_CELLS / 2;
+
+	// 默认最多缓存的区块数
+	public static final int DEFAULT_CACHE_SIZE = 1024;
+
+	public static final String PATH_DEFAULT_DIR = "worlds";
+
+	private static final String FILE_META = "world.dat";
+	private static final String EXTENSION_CHUNK = ".chunk";
+	private static final int VERSION = 1;
+
+	/**
+	 * 一个区块
+	 */
+	private static class Chunk {
+
+		final int cx, cy;
+		final byte[] cells = new byte[CHUNK_CELLS];
+		boolean isDirty; // 保存之后是否改动过 (淘汰时需要保存)
+
+		Chunk(int cx, int cy) {
+			this.cx = cx;
+			this.cy = cy;
+		}
+
+	}
+
+	private final File dir;
+	private final long seed;
+	private final int minesPerChunk;
+	private final int cacheSize;
+
+	// 按访问顺序排列, 超过上限时淘汰最久未使用的区块
+	private final LinkedHashMap<Long, Chunk> chunks;
+	private IOException saveError; // 淘汰时保存失败 (下一次操作时抛出)
+
+	// 已保存区块的散列位图 (大小固定): 位为0的区块一定没有文件, 新区块不必每次都查询文件系统
+	private static final int SAVED_FILTER_BITS = 1 << 20;
+	private final BitSet saved = new BitSet(SAVED_FILTER_BITS);
+
+	// 游戏状态
+	public boolean isGameover;
+	public long deadRow, deadCol;
+	public long opened; // 已翻开的格子数 (分数)
+	public long flags;
+
+	// 翻开操作的工作队列 (行列交替存放), 操作结束后即为本次操作改变了状态的格子
+	private long[] queue = new long[1024];
+	private int queueHead, queueTail;
+
+	// 最近生成的区块地雷 (每行一个 long), 相邻区块生成时大多可以直接复用
+	private static final int MINE_CACHE_SIZE = 64;
+	private final LinkedHashMap<Long, long[]> mineCache = new LinkedHashMap<Long, long[]>(MINE_CACHE_SIZE * 2, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, long[]> eldest) {
+			return size() > MINE_CACHE_SIZE;
+		}
+	};
+
+	// 生成区块时临时使用的相邻 3x3 个区块的地雷
+	private final long[][] mineRows = new long[9][];
+	private final byte[] padded = new byte[PADDED_STRIDE * PADDED_STRIDE];
+	private final int[] columns = new int[PADDED_STRIDE];
+
+	private World(File dir, long seed, int minesPerChunk, int cacheSize) {
+		this.dir = dir;
+		this.seed = seed;
+		this.minesPerChunk = minesPerChunk;
+		this.cacheSize = Math.max(16, cacheSize);
+		this.chunks = new LinkedHashMap<Long, Chunk>(this.cacheSize * 2, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Chunk> eldest) {
+				if (size() <= World.this.cacheSize) {
+					return false;
+				}
+				try {
+					saveChunk(eldest.getValue());
+				} catch (IOException e) {
+					saveError = e;
+				}
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * 创建新的世界 (目录中已保存的区块会被删除)
+	 *
+	 * @param dir
+	 *            保存区块的目录
+	 * @param seed
+	 *            随机种子
+	 * @param minesPerChunk
+	 *            每个区块的雷数
+	 * @param cacheSize
+	 *            最多缓存的区块数 (至少 16)
+	 */
+	public static World create(File dir, long seed, int minesPerChunk, int cacheSize) throws IOException {
+		if (minesPerChunk < MIN_MINES_PER_CHUNK || minesPerChunk > MAX_MINES_PER_CHUNK) {
+			throw new IllegalArgumentException("Mines per chunk must be in [" + MIN_MINES_PER_CHUNK + ", " + MAX_MINES_PER_CHUNK + "]: " + minesPerChunk);
+		}
+		Files.createDirectories(dir.toPath());
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				if (file.getName().endsWith(EXTENSION_CHUNK)) {
+					Files.delete(file.toPath());
+				}
+			}
+		}
+		return new World(dir, seed, minesPerChunk, cacheSize);
+	}
+
+	/**
+	 * 载入目录中保存的世界
+	 *
+	 * @param dir
+	 *            保存区块的目录
+	 * @param cacheSize
+	 *            最多缓存的区块数 (至少 16)
+	 */
+	public static World load(File dir, int cacheSize) throws IOException {
+		try (DataInputStream in = new DataInputStream(Files.newInputStream(new File(dir, FILE_META).toPath()))) {
+			if (in.readInt() != VERSION) {
+				throw new IOException("Unsupported world version");
+			}
+			long seed = in.readLong();
+			int minesPerChunk = in.readInt();
+			if (minesPerChunk < MIN_MINES_PER_CHUNK || minesPerChunk > MAX_MINES_PER_CHUNK) {
+				throw new IOException("Corrupt world");
+			}
+			World world = new World(dir, seed, minesPerChunk, cacheSize);
+			String[] names = dir.list();
+			for (String name : names != null ? names : new String[0]) {
+				int split = name.indexOf('_');
+				if (split > 0 && name.endsWith(EXTENSION_CHUNK)) {
+					try {
+						int cx = Integer.parseInt(name.substring(0, split));
+						int cy = Integer.parseInt(name.substring(split + 1, name.length() - EXTENSION_CHUNK.length()));
+						world.saved.set(filterBit(cx, cy));
+					} catch (NumberFormatException e) {
+						// 忽略其他文件
+					}
+				}
+			}
+			world.opened = in.readLong();
+			world.flags = in.readLong();
+			world.isGameover = in.readBoolean();
+			world.deadRow = in.readLong();
+			world.deadCol = in.readLong();
+			return world;
+		}
+	}
+
+	/**
+	 * 判断世界是否存在 (目录中有保存的世界)
+	 */
+	public static boolean exists(File dir) {
+		return new File(dir, FILE_META).isFile();
+	}
+
+	/**
+	 * 保存所有改动过的区块与游戏状态
+	 */
+	public void save() throws IOException {
+		for (Chunk chunk : chunks.values()) {
+			saveChunk(chunk);
+		}
+		try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(new File(dir, FILE_META).toPath()))) {
+			out.writeInt(VERSION);
+			out.writeLong(seed);
+			out.writeInt(minesPerChunk);
+			out.writeLong(opened);
+			out.writeLong(flags);
+			out.writeBoolean(isGameover);
+			out.writeLong(deadRow);
+			out.writeLong(deadCol);
+		}
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * 获取当前缓存的区块数
+	 */
+	public int getCachedChunkSize() {
+		return chunks.size();
+	}
+
+	/**
+	 * 获取格子状态 (STAT_*)
+	 */
+	public int getStatus(long row, long col) {
+		return Board.stat(chunkOf(row, col).cells[localIndex(row, col)]);
+	}
+
+	/**
+	 * 获取格子的内容 ('M' 或 '0'~'8')
+	 */
+	public char getGrid(long row, long col) {
+		byte cell = chunkOf(row, col).cells[localIndex(row, col)];
+		return Board.isMine(cell) ? Core.MINE : (char) (Board.count(cell) + '0');
+	}
+
+	/**
+	 * 标记 / 取消标记指定格子 (游戏结束后忽略)
+	 */
+	public void flag(long row, long col) throws IOException {
+		queueHead = queueTail = 0;
+		if (isGameover) {
+			return;
+		}
+		Chunk chunk = chunkOf(row, col);
+		int local = localIndex(row, col);
+		byte cell = chunk.cells[local];
+		int stat = Board.stat(cell);
+		if (stat == Core.STAT_OPEN) {
+			checkSaveError();
+			return;
+		}
+		chunk.cells[local] = Board.withStat(cell, stat == Core.STAT_COVER ? Core.STAT_FLAG : Core.STAT_COVER);
+		chunk.isDirty = true;
+		flags += stat == Core.STAT_COVER ? 1 : -1;
+		push(row, col);
+		checkSaveError();
+	}
+
+	/**
+	 * 翻开指定格子 (未翻开且未标记的格子才会被翻开, 游戏结束后忽略)
+	 */
+	public void open(long row, long col) throws IOException {
+		queueHead = queueTail = 0;
+		if (isGameover) {
+			return;
+		}
+		enqueue(row, col);
+		reveal();
+	}
+
+	/**
+	 * 快速排雷 (若周边雷数与周边标记数一致，则翻开周边未标记的格子; 游戏结束后忽略)
+	 */
+	public void sweep(long row, long col) throws IOException {
+		queueHead = queueTail = 0;
+		if (isGameover) {
+			return;
+		}
+		byte cell = chunkOf(row, col).cells[localIndex(row, col)];
+		if (Board.stat(cell) == Core.STAT_OPEN) {
+			int flagCount = 0;
+			for (int i = 0; i < Core.OFFSET_AROUND_ROW.length; i++) {
+				if (getStatus(row + Core.OFFSET_AROUND_ROW[i], col + Core.OFFSET_AROUND_COL[i]) == Core.STAT_FLAG) {
+					flagCount++;
+				}
+			}
+			if (flagCount == Board.count(cell)) {
+				for (int i = 0; i < Core.OFFSET_AROUND_ROW.length; i++) {
+					enqueue(row + Core.OFFSET_AROUND_ROW[i], col + Core.OFFSET_AROUND_COL[i]);
+				}
+			}
+		}
+		reveal();
+	}
+
+	/**
+	 * 将未翻开且未标记的格子翻开并加入工作队列
+	 * <p>
+	 * 每次都重新从缓存取区块 (不持有区块的引用), 连锁翻开途经的区块超过缓存上限时也不会改动已被淘汰的区块。
+	 */
+	private void enqueue(long row, long col) {
+		Chunk chunk = chunkOf(row, col);
+		int local = localIndex(row, col);
+		byte cell = chunk.cells[local];
+		if ((cell & Board.MASK_STAT) != Board.CELL_COVER) {
+			return;
+		}
+		chunk.cells[local] = Board.withStat(cell, Core.STAT_OPEN);
+		chunk.isDirty = true;
+
+		if (Board.isMine(cell)) {
+			deadRow = row;
+			deadCol = col;
+			isGameover = true;
+		} else {
+			opened++;
+		}
+		push(row, col);
+	}
+
+	private void push(long row, long col) {
+		if (queueTail + 2 > queue.length) {
+			queue = Arrays.copyOf(queue, queue.length * 2);
+		}
+		queue[queueTail++] = row;
+		queue[queueTail++] = col;
+	}
+
+	/**
+	 * 处理工作队列: 翻到周围无雷的格子则继续翻开周围一圈 (可以跨越区块)
+	 */
+	private void reveal() throws IOException {
+		while (queueHead < queueTail) {
+			long row = queue[queueHead++];
+			long col = queue[queueHead++];
+			if ((chunkOf(row, col).cells[localIndex(row, col)] & (Board.MASK_COUNT | Board.BIT_MINE)) == 0) {
+				for (int i = 0; i < Core.OFFSET_AROUND_ROW.length; i++) {
+					enqueue(row + Core.OFFSET_AROUND_ROW[i], col + Core.OFFSET_AROUND_COL[i]);
+				}
+			}
+		}
+		checkSaveError();
+	}
+
+	/**
+	 * 获取上一次操作改变了状态的格子数量
+	 */
+	public int getChangedSize() {
+		return queueTail / 2;
+	}
+
+	public long getChangedRow(int i) {
+		return queue[i * 2];
+	}
+
+	public long getChangedCol(int i) {
+		return queue[i * 2 + 1];
+	}
+
+	private void checkSaveError() throws IOException {
+		if (saveError != null) {
+			IOException e = saveError;
+			saveError = null;
+			throw e;
+		}
+	}
+
+	private static int localIndex(long row, long col) {
+		return (int) (row & CHUNK_MASK) << CHUNK_SHIFT | (int) (col & CHUNK_MASK);
+	}
+
+	private static long keyOf(int cx, int cy) {
+		return (long) cy << 32 | (cx & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * 获取格子所在的区块 (不在缓存中时从文件读回或新建)
+	 */
+	private Chunk chunkOf(long row, long col) {
+		int cx = (int) (col >> CHUNK_SHIFT);
+		int cy = (int) (row >> CHUNK_SHIFT);
+		Long key = keyOf(cx, cy);
+		Chunk chunk = chunks.get(key);
+		if (chunk == null) {
+			chunk = createChunk(cx, cy);
+			chunks.put(key, chunk);
+		}
+		return chunk;
+	}
+
+	/**
+	 * 生成区块的地雷与周围雷数, 若有保存的状态则读回
+	 */
+	private Chunk createChunk(int cx, int cy) {
+		Chunk chunk = new Chunk(cx, cy);
+
+		// 相邻 3x3 个区块的地雷 (第 4 个为本区块)
+		for (int dy = -1; dy <= 1; dy++) {
+			for (int dx = -1; dx <= 1; dx++) {
+				mineRows[(dy + 1) * 3 + dx + 1] = minesOf(cx + dx, cy + dy);
+			}
+		}
+
+		// 带一圈边框的地雷表
+		for (int r = -1; r <= CHUNK_SIZE; r++) {
+			for (int c = -1; c <= CHUNK_SIZE; c++) {
+				padded[(r + 1) * PADDED_STRIDE + c + 1] = (byte) isMineAt(r, c);
+			}
+		}
+
+		// 周围雷数: 先求每列上中下三格之和, 再求左中右三列之和减去自身 (与 Core.restoreMines 相同)
+		byte[] cells = chunk.cells;
+		for (int r = 0; r < CHUNK_SIZE; r++) {
+			int above = r * PADDED_STRIDE;
+			int middle = above + PADDED_STRIDE;
+			int below = middle + PADDED_STRIDE;
+			for (int c = 0; c < PADDED_STRIDE; c++) {
+				columns[c] = padded[above + c] + padded[middle + c] + padded[below + c];
+			}
+			for (int c = 0; c < CHUNK_SIZE; c++) {
+				int mine = padded[middle + c + 1];
+				int count = columns[c] + columns[c + 1] + columns[c + 2] - mine;
+				cells[r << CHUNK_SHIFT | c] = (byte) (Board.CELL_COVER | mine * Board.BIT_MINE | count);
+			}
+		}
+
+		File file = saved.get(filterBit(cx, cy)) ? chunkFile(cx, cy) : null;
+		if (file != null && file.isFile()) {
+			try {
+				readStatus(chunk, Files.readAllBytes(file.toPath()));
+			} catch (IOException e) {
+				saveError = e;
+			}
+		}
+		return chunk;
+	}
+
+	/**
+	 * 取相对于本区块的格子是否为地雷 (可以位于相邻区块)
+	 */
+	private int isMineAt(int r, int c) {
+		int by = r < 0 ? 0 : r >= CHUNK_SIZE ? 2 : 1;
+		int bx = c < 0 ? 0 : c >= CHUNK_SIZE ? 2 : 1;
+		return (int) (mineRows[by * 3 + bx][r & CHUNK_MASK] >>> (c & CHUNK_MASK)) & 1;
+	}
+
+	/**
+	 * 获取区块的地雷 (不在缓存中时生成)
+	 */
+	private long[] minesOf(int cx, int cy) {
+		Long key = keyOf(cx, cy);
+		long[] rows = mineCache.get(key);
+		if (rows == null) {
+			rows = placeMines(cx, cy);
+			mineCache.put(key, rows);
+		}
+		return rows;
+	}
+
+	/**
+	 * 由种子与区块坐标生成区块的地雷 (Floyd 抽样, 原点周围一圈不放地雷)
+	 *
+	 * @return 每行的地雷位
+	 */
+	private long[] placeMines(int cx, int cy) {
+		long[] rows = new long[CHUNK_SIZE];
+		SplittableRandom random = new SplittableRandom(seed ^ (cx * 0x9E3779B97F4A7C15L) ^ (cy * 0xC2B2AE3D27D4EB4FL));
+		for (int j = CHUNK_CELLS - minesPerChunk; j < CHUNK_CELLS; j++) {
+			int pick = random.nextInt(j + 1);
+			if ((rows[pick >> CHUNK_SHIFT] >>> (pick & CHUNK_MASK) & 1) != 0) {
+				pick = j;
+			}
+			rows[pick >> CHUNK_SHIFT] |= 1L << (pick & CHUNK_MASK);
+		}
+
+		// 原点 (0, 0) 周围一圈 (跨越 4 个区块)
+		for (long row = -1; row <= 1; row++) {
+			for (long col = -1; col <= 1; col++) {
+				if (row >> CHUNK_SHIFT == cy && col >> CHUNK_SHIFT == cx) {
+					rows[(int) (row & CHUNK_MASK)] &= ~(1L << (col & CHUNK_MASK));
+				}
+			}
+		}
+		return rows;
+	}
+
+	private File chunkFile(int cx, int cy) {
+		return new File(dir, cx + "_" + cy + EXTENSION_CHUNK);
+	}
+
+	/**
+	 * 保存改动过的区块 (每格 2 位状态)
+	 */
+	private void saveChunk(Chunk chunk) throws IOException {
+		if (!chunk.isDirty) {
+			return;
+		}
+		byte[] data = new byte[CHUNK_CELLS / 4];
+		for (int i = 0; i < CHUNK_CELLS; i++) {
+			data[i >> 2] |= Board.stat(chunk.cells[i]) << ((i & 3) << 1);
+		}
+		Files.write(chunkFile(chunk.cx, chunk.cy).toPath(), data);
+		saved.set(filterBit(chunk.cx, chunk.cy));
+		chunk.isDirty = false;
+	}
+
+	private static int filterBit(int cx, int cy) {
+		long hash = keyOf(cx, cy) * 0x9E3779B97F4A7C15L;
+		return (int) (hash >>> (64 - Integer.numberOfTrailingZeros(SAVED_FILTER_BITS)));
+	}
+
+	private static void readStatus(Chunk chunk, byte[] data) throws IOException {
+		if (data.length != CHUNK_CELLS / 4) {
+			throw new IOException("Corrupt chunk " + chunk.cx + "," + chunk.cy);
+		}
+		for (int i = 0; i < CHUNK_CELLS; i++) {
+			int stat = data[i >> 2] >> ((i & 3) << 1) & 3;
+			chunk.cells[i] = Board.withStat(chunk.cells[i], Math.min(stat, Core.STAT_FLAG));
+		}
+	}
+
+}